@@ -23,6 +23,7 @@ import net.luisalbertogh.log4jstats.panels.SQLToolPanel;
 import net.luisalbertogh.log4jstats.services.logfiles.StatisticsService;
 import net.luisalbertogh.log4jstats.services.sqlite.StatisticsSQLService;
 import net.luisalbertogh.log4jstats.utils.PropertiesLoader;
+import net.luisalbertogh.log4jstats.utils.ScanMode;
 import net.luisalbertogh.log4jstats.utils.StatisticsUtils;
 
 /**
@@ -123,6 +124,17 @@ public class Log4JStats implements ChangeListener {
                     properties.getProperty("log4jlogger"), properties.getProperty("log4jappender"));
             datePattern = StatisticsUtils.getDatePattern(conversionPattern);
             dateOnlyPattern = datePattern.split(" ")[0];
+            ss.setConversionPattern(conversionPattern);
+            if (properties.getProperty("scanmode") != null) {
+                ss.setScanMode(ScanMode.valueOf(properties.getProperty("scanmode")));
+            }
+            if (properties.getProperty("scanthreads") != null) {
+                int scanThreads = Integer.parseInt(properties.getProperty("scanthreads"));
+                ss.setParallelism(scanThreads > 0 ? scanThreads : Runtime.getRuntime().availableProcessors());
+            }
+            if (properties.getProperty("scansplitsize") != null) {
+                ss.setSplitSize(Long.parseLong(properties.getProperty("scansplitsize")) * 1024 * 1024);
+            }
 
             /** Add a tabbed panel */
             tabbedPane = new JTabbedPane();
@@ -0,0 +1,19 @@
+package net.luisalbertogh.log4jstats.interfaces;
+
+import net.luisalbertogh.log4jstats.utils.LogEvent;
+
+/**
+ * This interface receives the log events read from the log files, in time order.
+ * 
+ * @author lagarcia
+ */
+public interface LogEventHandler {
+    /**
+     * Handle a log event.
+     * 
+     * @param event
+     * @return False to stop reading the log files
+     * @throws Exception
+     */
+    public boolean handleEvent(LogEvent event) throws Exception;
+}
@@ -0,0 +1,17 @@
+package net.luisalbertogh.log4jstats.interfaces;
+
+/**
+ * This interface receives the lines read from the log files, in file order.
+ * 
+ * @author lagarcia
+ */
+public interface LogLineHandler {
+    /**
+     * Handle a log line. The line is only valid during the call, so it must be copied to be kept.
+     * 
+     * @param line
+     * @return False to stop reading the log files
+     * @throws Exception
+     */
+    public boolean handleLine(CharSequence line) throws Exception;
+}
@@ -0,0 +1,45 @@
+package net.luisalbertogh.log4jstats.interfaces;
+
+import java.util.List;
+
+import net.luisalbertogh.log4jstats.utils.SourceRange;
+
+/**
+ * This interface receives the lines read from the log files together with their position, so the reading can be
+ * resumed later after the ranges of lines handled.
+ *
+ * @author lagarcia
+ */
+public interface LogSourceHandler {
+    /**
+     * Start reading a log file.
+     *
+     * @param path - File path or URL
+     * @param fileKey - Identity of the file, which does not change when it is renamed
+     * @param firstLine - First line of the file, which tells a new file taking the identity of an old one
+     * @param length - Length of the complete lines of the file
+     * @return Ranges of the file handled in previous readings, or null to skip the file
+     * @throws Exception
+     */
+    public List<SourceRange> startSource(String path, String fileKey, String firstLine, long length)
+            throws Exception;
+
+    /**
+     * Start handling the lines of the file being read from a position. The lines before the position are not read.
+     *
+     * @param rangeStart - Start of the range handled that the lines go on, or the position itself for a new range
+     * @param start - Position of the first line
+     * @throws Exception
+     */
+    public void startRange(long rangeStart, long start) throws Exception;
+
+    /**
+     * Handle a log line. The line is only valid during the call, so it must be copied to be kept.
+     *
+     * @param line
+     * @param nextPosition - Position after the line, where the reading would be resumed
+     * @return False to stop reading the log files
+     * @throws Exception
+     */
+    public boolean handleLine(CharSequence line, long nextPosition) throws Exception;
+}
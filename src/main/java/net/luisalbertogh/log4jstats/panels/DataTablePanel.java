@@ -524,7 +524,8 @@ public class DataTablePanel extends StatisticsPanel {
                 String subaction = ((NavButton) source).getSubAction();
 
                 /* Filter text */
-                if ("search".equals(subaction)) {
+                boolean search = "search".equals(subaction);
+                if (search) {
                     String filter = searchTxt.getText();
                     if (filter != null && !"".equals(filter)) {
                         searchTxt.setBackground(LogColors.GREEN.getColor());
@@ -551,6 +552,14 @@ public class DataTablePanel extends StatisticsPanel {
                 createDataset(false);
                 /* Update table */
                 updateTable();
+
+                /* DB files the keyword is not searched in yet */
+                List<String> pending = ts.getTextIndexPending();
+                if (search && !pending.isEmpty()) {
+                    searchTxt.setBackground(LogColors.YELLOW.getColor());
+                    JOptionPane.showMessageDialog(main.getFrame(), main.getProperties().getProperty("textindexpending")
+                            + "\n" + pending, "Warning", JOptionPane.WARNING_MESSAGE);
+                }
             }
             /* Other buttons */
             else {
@@ -300,6 +300,8 @@ public class SQLToolPanel extends StatisticsPanel {
             output.setText("");
             /* Set output */
             sqltool.setTextArea(output);
+            /* Show the DB files loaded */
+            sqltool.setProgressBar(progressBar);
 
             /* Start progress bar */
             progressBar.setIndeterminate(true);
@@ -7,9 +7,7 @@ import java.io.StringReader;
 import java.net.URLConnection;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -19,8 +17,13 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 
+import net.luisalbertogh.log4jstats.utils.AppEventMatcher;
 import net.luisalbertogh.log4jstats.utils.HTTPClient;
+import net.luisalbertogh.log4jstats.utils.LogFileIndex;
+import net.luisalbertogh.log4jstats.utils.LogFileInfo;
 import net.luisalbertogh.log4jstats.utils.LogLevels;
+import net.luisalbertogh.log4jstats.utils.PatternLayoutTokenizer;
+import net.luisalbertogh.log4jstats.utils.TimestampParser;
 
 import org.jdom.Document;
 import org.jdom.Element;
@@ -39,6 +42,9 @@ public abstract class SuperService {
     /** Application events for the table */
     protected Map<String, String> appEventList;
 
+    /** Matcher for the application events of the table */
+    protected AppEventMatcher appEventMatcher;
+
     /** A list of invalid words to remove from log lines */
     protected List<String> invalidWords;
 
@@ -51,6 +57,15 @@ public abstract class SuperService {
     /** Maximum number of dates */
     protected int maxNumberOfDates;
 
+    /** Timestamp parser for the current date pattern */
+    private volatile TimestampParser timestampParser;
+
+    /** Metadata of the log files */
+    private final LogFileIndex logFileIndex = new LogFileIndex();
+
+    /** Log line tokenizer for the log4j conversion pattern */
+    protected PatternLayoutTokenizer tokenizer;
+
     /**
      * Default constructor
      */
@@ -99,6 +114,7 @@ public abstract class SuperService {
             String value = parts[1];
             this.appEventList.put(name, value);
         }
+        this.appEventMatcher = AppEventMatcher.compile(this.appEventList);
     }
 
     /**
@@ -118,6 +134,7 @@ public abstract class SuperService {
         }
 
         this.appEventList.remove(keyToRemove);
+        this.appEventMatcher = AppEventMatcher.compile(this.appEventList);
     }
 
     /**
@@ -151,28 +168,78 @@ public abstract class SuperService {
     }
 
     /**
-     * Get log level for current line.
+     * Set the log4j conversion pattern of the log files, so the log lines fields can be read by position.
+     * 
+     * @param conversionPattern
+     */
+    public void setConversionPattern(String conversionPattern) {
+        PatternLayoutTokenizer newTokenizer = null;
+        if (conversionPattern != null) {
+            newTokenizer = PatternLayoutTokenizer.compile(conversionPattern);
+            /** Without level field there is nothing to read by position */
+            if (!newTokenizer.hasField('p')) {
+                newTokenizer = null;
+            }
+        }
+        this.tokenizer = newTokenizer;
+    }
+
+    /**
+     * Get log level of the given log line. The level is read by position when the conversion pattern is known, so
+     * the message text is not taken into account. Otherwise, the level is searched within the whole line.
+     * 
+     * @param line
+     * @return Log level
+     */
+    public LogLevels getLineLevel(CharSequence line) {
+        if (tokenizer != null) {
+            LogLevels level = tokenizer.getLevel(line);
+            if (level != null) {
+                return level;
+            }
+        }
+
+        return getLevel(line);
+    }
+
+    /**
+     * Is the given log line of the given level?
+     * 
+     * @param line
+     * @param level
+     * @return
+     */
+    public boolean isLineOfLevel(CharSequence line, LogLevels level) {
+        if (tokenizer != null) {
+            return getLineLevel(line) == level;
+        }
+
+        return contains(line, level.getLevel());
+    }
+
+    /**
+     * Get log level for current line, searching the level names within the whole text.
      * 
      * @param line
      * @return Log level
      */
-    public LogLevels getLevel(String line) {
-        if (line.indexOf(LogLevels.FATAL.getLevel()) != -1) {
+    public LogLevels getLevel(CharSequence line) {
+        if (contains(line, LogLevels.FATAL.getLevel())) {
             return LogLevels.FATAL;
         }
-        if (line.indexOf(LogLevels.ERROR.getLevel()) != -1) {
+        if (contains(line, LogLevels.ERROR.getLevel())) {
             return LogLevels.ERROR;
         }
-        if (line.indexOf(LogLevels.DEBUG.getLevel()) != -1) {
+        if (contains(line, LogLevels.DEBUG.getLevel())) {
             return LogLevels.DEBUG;
         }
-        if (line.indexOf(LogLevels.INFO.getLevel()) != -1) {
+        if (contains(line, LogLevels.INFO.getLevel())) {
             return LogLevels.INFO;
         }
-        if (line.indexOf(LogLevels.WARN.getLevel()) != -1) {
+        if (contains(line, LogLevels.WARN.getLevel())) {
             return LogLevels.WARN;
         }
-        if (line.indexOf(LogLevels.TRACE.getLevel()) != -1) {
+        if (contains(line, LogLevels.TRACE.getLevel())) {
             return LogLevels.TRACE;
         }
 
@@ -181,28 +248,81 @@ public abstract class SuperService {
     }
 
     /**
-     * Get log files from log dir and sort them in date descending order.
+     * Does the given log line contain the given text?
+     * 
+     * @param line
+     * @param text
+     * @return
+     */
+    protected static boolean contains(CharSequence line, String text) {
+        if (line instanceof String) {
+            return ((String) line).indexOf(text) != -1;
+        }
+
+        char first = text.charAt(0);
+        int max = line.length() - text.length();
+        for (int i = 0; i <= max; i++) {
+            if (line.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < text.length() && line.charAt(i + j) == text.charAt(j)) {
+                j++;
+            }
+            if (j == text.length()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the timestamp parser for the given date pattern. The parser is compiled only when the pattern changes.
+     * 
+     * @param datePattern
+     * @return Timestamp parser
+     */
+    protected TimestampParser getTimestampParser(String datePattern) {
+        TimestampParser parser = timestampParser;
+        if (parser == null || !parser.getDatePattern().equals(datePattern)) {
+            parser = TimestampParser.compile(datePattern);
+            timestampParser = parser;
+        }
+
+        return parser;
+    }
+
+    /**
+     * Get log files from log dir and sort them in date descending order. The files whose log events are all out of the
+     * dates interval are skipped.
      * 
      * @param logsDir
+     * @param parser - Timestamp parser of the log lines
      * @return File[]
      * @throws Exception
      */
-    @SuppressWarnings({"unchecked", "rawtypes" })
-    protected File[] initLogFiles(String logsDir) throws Exception {
+    protected File[] initLogFiles(String logsDir, TimestampParser parser) throws Exception {
         File dir = new File(logsDir);
 
         if (!dir.isDirectory()) {
             return null;
         }
-        File files[] = dir.listFiles();
-        Arrays.sort(files, new Comparator() {
-            @Override
-            public int compare(final Object o1, final Object o2) {
-                return new Long(((File) o2).lastModified()).compareTo(new Long(((File) o1).lastModified()));
+        List<LogFileInfo> infos = logFileIndex.list(dir, parser);
+        if (infos == null) {
+            return null;
+        }
+
+        long initTime = initDate.getTime();
+        long endTime = endDate.getTime();
+        List<File> files = new ArrayList<File>(infos.size());
+        for (LogFileInfo info : infos) {
+            if (info.overlaps(initTime, endTime)) {
+                files.add(info.getFile());
             }
-        });
+        }
 
-        return files;
+        return files.toArray(new File[files.size()]);
     }
 
     /**
@@ -214,54 +334,68 @@ public abstract class SuperService {
      */
     protected List<String[]> getLogFilesByHTTP(String url, String baseName) throws Exception {
         List<String[]> logFiles = new ArrayList<String[]>();
+        while (initCal.before(endCal)) {
+            logFiles.add(getLogFileByHTTP(url, baseName, initCal.getTime()));
+            /* Next day */
+            initCal.add(Calendar.DATE, 1);
+        }
+
+        return logFiles;
+    }
+
+    /**
+     * Get the log file of one day from the server via HTTP.
+     * 
+     * @param url - The main URL
+     * @param baseName - Log files base name on server
+     * @param day
+     * @return Log file lines
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    protected String[] getLogFileByHTTP(String url, String baseName, Date day) throws Exception {
         Map<String, String> params = new HashMap<String, String>();
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        while (initCal.before(endCal)) {
-            params.put("logFile", baseName + sdf.format(initCal.getTime()));
-            URLConnection connection = HTTPClient.createHTTPSconnection(url, params);
-            /* Reading response */
-            StringBuilder sb = new StringBuilder();
-            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            String responseString;
-            /* Do not keep first line */
-            boolean saveLine = false;
-            while ((responseString = in.readLine()) != null) {
-                /* Replace break of line with full tag */
-                if (responseString.indexOf("<br/>") != -1) {
-                    responseString = responseString.replaceAll("<br/>", "EOL");
-                }
+        params.put("logFile", baseName + sdf.format(day));
+        URLConnection connection = HTTPClient.createHTTPSconnection(url, params);
+        /* Reading response */
+        StringBuilder sb = new StringBuilder();
+        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+        String responseString;
+        /* Do not keep first line */
+        boolean saveLine = false;
+        while ((responseString = in.readLine()) != null) {
+            /* Replace break of line with full tag */
+            if (responseString.indexOf("<br/>") != -1) {
+                responseString = responseString.replaceAll("<br/>", "EOL");
+            }
 
-                /* Save only the body */
-                if (responseString.indexOf("body") != -1) {
-                    if (!saveLine) {
-                        saveLine = true;
-                    } else {
-                        sb.append(responseString);
-                        break;
-                    }
-                }
-                if (saveLine) {
+            /* Save only the body */
+            if (responseString.indexOf("body") != -1) {
+                if (!saveLine) {
+                    saveLine = true;
+                } else {
                     sb.append(responseString);
+                    break;
                 }
             }
-            in.close();
-
-            /* Parsing response */
-            SAXBuilder builder = new SAXBuilder();
-            builder.setValidation(false);
-            Document htmlDoc = builder.build(new StringReader(sb.toString()));
-            Element root = htmlDoc.getRootElement();
-            Element table = root.getChild("table");
-            List<Element> rows = table.getChildren("tr");
-            Element content = rows.get(2);
-            String logs = content.getChild("td").getText();
-            String[] logsArray = logs.split("EOL");
-            logFiles.add(logsArray);
-            /* Next day */
-            initCal.add(Calendar.DATE, 1);
+            if (saveLine) {
+                sb.append(responseString);
+            }
         }
-
-        return logFiles;
+        in.close();
+
+        /* Parsing response */
+        SAXBuilder builder = new SAXBuilder();
+        builder.setValidation(false);
+        Document htmlDoc = builder.build(new StringReader(sb.toString()));
+        Element root = htmlDoc.getRootElement();
+        Element table = root.getChild("table");
+        List<Element> rows = table.getChildren("tr");
+        Element content = rows.get(2);
+        String logs = content.getChild("td").getText();
+
+        return logs.split("EOL");
     }
 
     /**
@@ -288,19 +422,25 @@ public abstract class SuperService {
      * @return
      */
     public Map<String, String> getAppEvent(String logLine) {
-        Map<String, String> appEvent = new HashMap<String, String>();
-        String logLineTmp = logLine.toLowerCase();
-        Set<String> names = appEventList.keySet();
-        for (String name : names) {
-            String value = appEventList.get(name);
-            if (logLineTmp.indexOf(value.toLowerCase()) != -1) {
-                appEvent.put("name", name);
-                appEvent.put("value", value);
-                return appEvent;
-            }
+        int id = getAppEventId(logLine);
+        if (id == AppEventMatcher.NONE) {
+            return null;
         }
 
-        return null;
+        Map<String, String> appEvent = new HashMap<String, String>();
+        appEvent.put("name", appEventMatcher.getName(id));
+        appEvent.put("value", appEventMatcher.getValue(id));
+        return appEvent;
+    }
+
+    /**
+     * Get the id of the application event within the passed log line. The line is not copied.
+     * 
+     * @param logLine
+     * @return Event id or AppEventMatcher.NONE
+     */
+    public int getAppEventId(CharSequence logLine) {
+        return appEventMatcher.match(logLine);
     }
 
     /**
@@ -315,6 +455,19 @@ public abstract class SuperService {
         }
     }
 
+    /**
+     * Add the application event with the given id to the given event map.
+     * 
+     * @param id - Event id, as returned by getAppEventId
+     * @param eventsMap
+     */
+    public void addAppEvent(int id, Map<String, String> eventsMap) {
+        String name = appEventMatcher.getName(id);
+        if (!eventsMap.containsKey(name)) {
+            eventsMap.put(name, appEventMatcher.getValue(id));
+        }
+    }
+
     /**
      * Return skipLogLevels attribute.
      * 
@@ -1,9 +1,9 @@
 package net.luisalbertogh.log4jstats.services.logfiles;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -11,13 +11,24 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import net.luisalbertogh.log4jstats.interfaces.StatisticsInterface;
 import net.luisalbertogh.log4jstats.services.SuperService;
+import net.luisalbertogh.log4jstats.utils.AppEventMatcher;
+import net.luisalbertogh.log4jstats.utils.FileRange;
+import net.luisalbertogh.log4jstats.utils.LineSource;
+import net.luisalbertogh.log4jstats.utils.LogFileSeeker;
+import net.luisalbertogh.log4jstats.utils.LogFileSplitter;
 import net.luisalbertogh.log4jstats.utils.LogLevels;
+import net.luisalbertogh.log4jstats.utils.MappedLineScanner;
+import net.luisalbertogh.log4jstats.utils.ReaderLineSource;
+import net.luisalbertogh.log4jstats.utils.ScanMode;
+import net.luisalbertogh.log4jstats.utils.TimestampParser;
 
 /**
  * Implement the main statistics services to load the main data sets.
@@ -32,6 +43,15 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
     /** Current log levels */
     private Set<String> logLevels;
 
+    /** Log files scanning mode */
+    private ScanMode scanMode = ScanMode.READER;
+
+    /** Pool to scan the log files concurrently, null to scan them sequentially */
+    private volatile ForkJoinPool scanPool;
+
+    /** Size of the ranges the big log files are cut in when they are scanned in the pool */
+    private long splitSize = 256L * 1024 * 1024;
+
     /**
      * Default constructor
      * 
@@ -70,99 +90,207 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
      * @throws Exception
      */
     @Override
-    @SuppressWarnings("unchecked")
     public Map<String, Integer> getNEventsPerDate(String datePattern, String logsDir, LogLevels level) throws Exception {
+        try {
+            return countEventsPerDate(datePattern, logsDir, Collections.singletonList(level)).get(0);
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+    }
+
+    /**
+     * Get number of different events per date.
+     * 
+     * @param datePattern
+     * @param logsDir
+     * @return Map of different events with map of data/n events.
+     * @throws Exception
+     */
+    @Override
+    public Map<String, Map<String, Integer>> getNDiffEventsPerDate(String datePattern, String logsDir) throws Exception {
+        Map<String, Map<String, Integer>> collection = new HashMap<String, Map<String, Integer>>();
+
+        try {
+            /** Load available levels and count all of them in a single pass */
+            List<LogLevels> availableLevels = getSkipLogLevels();
+            List<Map<String, Integer>> levelsLogs = countEventsPerDate(datePattern, logsDir, availableLevels);
+            for (int i = 0; i < availableLevels.size(); i++) {
+                Map<String, Integer> logs = levelsLogs.get(i);
+                if (logs.size() != 0) {
+                    collection.put(availableLevels.get(i).getLevel(), logs);
+                }
+            }
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+
+        return collection;
+    }
+
+    /**
+     * Scan engine for the events per date counters. Read the log files once and fill one date counter per given
+     * level in the same pass. A null level counts every log line. Only the part of each file between the init and
+     * end dates is read, and the older files are not read at all. With a scan pool the files, and the ranges of the
+     * big files, are counted concurrently and the partial counters are merged in files order, so the result is the
+     * same than the sequential scan.
+     * 
+     * @param datePattern
+     * @param logsDir
+     * @param levels - Log4j levels to count, in the order of the returned counters
+     * @return One map with the relation between date as text and number of events per level.
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Integer>> countEventsPerDate(String datePattern, String logsDir, List<LogLevels> levels)
+            throws Exception {
+        /** One date counter per level */
+        int nLevels = levels.size();
+        List<Map<String, Integer>> datasets = new ArrayList<Map<String, Integer>>(nLevels);
+        for (int i = 0; i < nLevels; i++) {
+            datasets.add(new TreeMap<String, Integer>(new DateComparator(datePattern)));
+        }
+
+        /** Timestamp parser */
+        TimestampParser parser = getTimestampParser(datePattern);
 
-        Map<String, Integer> dataset = new TreeMap<String, Integer>(new DateComparator(datePattern));
+        /** Log files in date descending order, cut in ranges when they are scanned in the pool */
+        ForkJoinPool pool = scanPool;
+        ScanRanges ranges = new ScanRanges(initLogFiles(logsDir, parser), pool != null ? splitSize : 0, parser,
+                initDate.getTime(), endDate.getTime());
+
+        /** Ranges counted in the pool, submitted a few ranges ahead of the merge */
+        List<EventCountsTask> tasks = new ArrayList<EventCountsTask>();
+        int ahead = pool != null ? pool.getParallelism() * 2 : 0;
+        for (int r = 0; r < ahead && ranges.get(r) != null; r++) {
+            tasks.add((EventCountsTask) pool.submit(new EventCountsTask(ranges.get(r), levels, parser)));
+        }
 
         try {
-            /** Log files in date descending order */
-            File[] logFiles = initLogFiles(logsDir);
-
-            /** Iterate over the log files */
-            for (File logFile : logFiles) {
-                /** Read log file */
-                BufferedReader bf = new BufferedReader(new FileReader(logFile));
-                String line = "";
-                while ((line = bf.readLine()) != null) {
+            /** Merge the counters of each range, in files order */
+            FileRange range;
+            for (int r = 0; (range = ranges.get(r)) != null; r++) {
+                List<Map<String, Integer>> counts;
+                if (pool != null) {
+                    FileRange next = ranges.get(r + ahead);
+                    if (next != null) {
+                        tasks.add((EventCountsTask) pool.submit(new EventCountsTask(next, levels, parser)));
+                    }
+                    counts = tasks.get(r).join();
+                } else {
+                    counts = countRangeEvents(range, levels, parser, null);
+                }
+
+                for (int i = 0; i < nLevels; i++) {
+                    Map<String, Integer> dataset = datasets.get(i);
+                    for (Map.Entry<String, Integer> entry : counts.get(i).entrySet()) {
+                        Integer count = dataset.get(entry.getKey());
+                        dataset.put(entry.getKey(), count != null ? count + entry.getValue() : entry.getValue());
+                    }
+                }
+            }
+        } finally {
+            /** Ranges not needed any more, after an error */
+            for (EventCountsTask task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        return datasets;
+    }
+
+    /**
+     * Count the events per date of one range of a log file, for the given levels.
+     * 
+     * @param range
+     * @param levels
+     * @param parser
+     * @param owner - Task counting the range, to stop when it is cancelled, or null
+     * @return Partial date counters of the range, one per level
+     * @throws IOException
+     */
+    private List<Map<String, Integer>> countRangeEvents(FileRange range, List<LogLevels> levels,
+            TimestampParser parser, ForkJoinTask<?> owner) throws IOException {
+        /** One date counter per level */
+        int nLevels = levels.size();
+        List<Map<String, Integer>> counts = new ArrayList<Map<String, Integer>>(nLevels);
+        for (int i = 0; i < nLevels; i++) {
+            counts.add(new HashMap<String, Integer>());
+        }
+
+        /** Dates limits */
+        long initTime = initDate.getTime();
+        long endTime = endDate.getTime();
+
+        /** Read log file */
+        LineSource lines = openLogFile(range);
+        try {
+            while (lines.nextLine()) {
+                if (owner != null && owner.isCancelled()) {
+                    break;
+                }
+                CharSequence line = lines.getLine();
+
+                /** Date is parsed only once, for the first matching level */
+                String dateStr = null;
+                long logTime = TimestampParser.INVALID;
+
+                /** Level read by position, if the conversion pattern is known */
+                LogLevels lineLevel = tokenizer != null ? getLineLevel(line) : null;
+                for (int i = 0; i < nLevels; i++) {
                     /** Skip level lines if level is not null */
+                    LogLevels level = levels.get(i);
                     if (level != null) {
-                        String levelStr = level.getLevel();
-                        if (line.indexOf(levelStr) == -1) {
+                        if (lineLevel != null ? lineLevel != level : !contains(line, level.getLevel())) {
                             continue;
                         }
                     }
 
-                    String dateStr, timeStr;
-                    try {
-                        StringTokenizer st = new StringTokenizer(line, " ");
-                        /** Assuming that date are always the first two words */
-                        dateStr = st.nextToken();
-                        timeStr = st.nextToken();
-                        /** If this is not true, skip this line */
-                        SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
-                        Date logDate = sdf.parse(dateStr + " " + timeStr);
-
-                        /** Check dates. If log date is before init date, cotinue to next log line */
-                        if (logDate.after(endDate)) {
-                            continue;
-                        }
-                        /** If date is after endDate, finish processing data */
-                        else if (logDate.before(initDate)) {
-                            if (bf != null) {
-                                bf.close();
-                            }
-                            return dataset;
+                    if (logTime == TimestampParser.INVALID) {
+                        /** Assuming that the line starts with the date. If this is not true, skip this line */
+                        logTime = parser.parse(line);
+                        if (logTime == TimestampParser.INVALID) {
+                            break;
                         }
-                    } catch (Exception e) {
-                        /** Skip problematic parsing */
-                        continue;
+                        dateStr = parser.getDate(line);
+                    }
+
+                    /** Check dates. The range boundaries are events, so check the lines out of the dates anyway */
+                    if (logTime > endTime || logTime < initTime) {
+                        break;
                     }
 
                     /** Insert or update in dataset */
-                    if (dataset.containsKey(dateStr)) {
+                    Map<String, Integer> dataset = counts.get(i);
+                    Integer count = dataset.get(dateStr);
+                    if (count != null) {
                         /** Increment count */
-                        dataset.put(dateStr, dataset.get(dateStr) + 1);
+                        dataset.put(dateStr, count + 1);
                     } else {
                         /** Insert for first time */
                         dataset.put(dateStr, new Integer(1));
                     }
                 }
-                bf.close();
             }
-        } catch (Exception e) {
-            throw new Exception(e.getMessage());
+        } finally {
+            lines.close();
         }
 
-        return dataset;
+        return counts;
     }
 
     /**
-     * Get number of different events per date.
+     * Open the given log file range with the current scanning mode.
      * 
-     * @param datePattern
-     * @param logsDir
-     * @return Map of different events with map of data/n events.
-     * @throws Exception
+     * @param range
+     * @return Line source
+     * @throws IOException
      */
-    @Override
-    public Map<String, Map<String, Integer>> getNDiffEventsPerDate(String datePattern, String logsDir) throws Exception {
-        Map<String, Map<String, Integer>> collection = new HashMap<String, Map<String, Integer>>();
-
-        try {
-            /** Load available levels */
-            List<LogLevels> availableLevels = getSkipLogLevels();
-            for (LogLevels level : availableLevels) {
-                Map<String, Integer> logs = getNEventsPerDate(datePattern, logsDir, level);
-                if (logs.size() != 0) {
-                    collection.put(level.getLevel(), logs);
-                }
-            }
-        } catch (Exception e) {
-            throw new Exception(e.getMessage());
+    private LineSource openLogFile(FileRange range) throws IOException {
+        if (scanMode == ScanMode.MAPPED) {
+            return new MappedLineScanner(range);
         }
 
-        return collection;
+        return new ReaderLineSource(range);
     }
 
     /**
@@ -197,6 +325,7 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
 
     /**
      * Retrieve a dataset with the details of the application event logs, ready to be used for plotting or rendering.
+     * With a scan pool the files, and the ranges of the big files, are read concurrently and merged in files order.
      * 
      * @param datePattern
      * @param logsDir
@@ -216,9 +345,12 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
         /** Dataset with events and counters - Use LinkedHashMap to sort the values by entering order */
         Map<String, Object> eventCounter = new LinkedHashMap<String, Object>();
 
+        /** Ranges read in the pool */
+        List<AppEventCountsTask> tasks = new ArrayList<AppEventCountsTask>();
+
         try {
-            /** Log files in date descending order */
-            File[] logFiles = initLogFiles(logsDir);
+            /** Timestamp parser */
+            TimestampParser parser = getTimestampParser(datePattern);
 
             /** Available log levels */
             Set<String> logLevels = new TreeSet<String>();
@@ -226,89 +358,50 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
             /** Available app. events */
             Map<String, String> appEvents = new TreeMap<String, String>();
 
-            /** Iterate over the log files */
-            for (File logFile : logFiles) {
-                /** Read log file */
-                BufferedReader bf = new BufferedReader(new FileReader(logFile));
-                String line = "";
-                while ((line = bf.readLine()) != null) {
-                    /** Skip level lines if level is not null */
-                    if (level != null) {
-                        String levelStr = level.getLevel();
-                        if (line.indexOf(levelStr) == -1) {
-                            continue;
-                        }
-                    }
+            /** App. event filter matcher */
+            AppEventMatcher filterMatcher = null;
+            if (appEventFilter != null) {
+                filterMatcher = AppEventMatcher.compile(Collections.singletonMap(appEventFilter, appEventFilter));
+            }
 
-                    /** Skip log line if app. event filter is not null */
-                    if (appEventFilter != null) {
-                        if (line.toLowerCase().indexOf(appEventFilter) == -1) {
-                            continue;
-                        }
-                    }
+            /** Log files in date descending order, cut in ranges when they are read in the pool */
+            ForkJoinPool pool = scanPool;
+            ScanRanges ranges = new ScanRanges(initLogFiles(logsDir, parser), pool != null ? splitSize : 0, parser,
+                    initDate.getTime(), endDate.getTime());
 
-                    String dateStr, timeStr;
-                    try {
-                        StringTokenizer st = new StringTokenizer(line, " ");
-                        /** Assuming that date are always the first two words */
-                        dateStr = st.nextToken();
-                        timeStr = st.nextToken();
-                        /** If this is not true, skip this line */
-                        SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
-                        Date logDate = sdf.parse(dateStr + " " + timeStr);
-
-                        /** Check dates. If log date is before init date, cotinue to next log line */
-                        if (logDate.after(endDate)) {
-                            continue;
-                        }
-                        /** If date is after endDate, finish processing data */
-                        else if (logDate.before(initDate)) {
-                            if (bf != null) {
-                                bf.close();
-                            }
-                            dataBundle.put("dataset", eventCounter);
-                            dataBundle.put("logLevels", logLevels);
-                            dataBundle.put("appEvents", appEvents);
-                            this.appEvents = appEvents;
-                            this.logLevels = logLevels;
-                            return dataBundle;
-                        }
-                    } catch (Exception e) {
-                        /** Skip problematic parsing */
-                        continue;
-                    }
+            /** Ranges read in the pool, submitted a few ranges ahead of the merge */
+            int ahead = pool != null ? pool.getParallelism() * 2 : 0;
+            for (int r = 0; r < ahead && ranges.get(r) != null; r++) {
+                tasks.add((AppEventCountsTask) pool.submit(new AppEventCountsTask(ranges.get(r), level,
+                        filterMatcher, parser)));
+            }
 
-                    Map<String, Object> logLine = new HashMap<String, Object>();
-                    logLine.put("date", dateStr);
-                    /** Is log level available? */
-                    String logLevel = getLevel(line).getLevel();
-                    if (!isLogLevelAvailable(logLevel)) {
-                        continue;
+            /** Merge the events of each range, in files order */
+            FileRange range;
+            for (int r = 0; (range = ranges.get(r)) != null; r++) {
+                AppEventCounts counts;
+                if (pool != null) {
+                    FileRange next = ranges.get(r + ahead);
+                    if (next != null) {
+                        tasks.add((AppEventCountsTask) pool.submit(new AppEventCountsTask(next, level, filterMatcher,
+                                parser)));
                     }
-                    logLevels.add(logLevel);
-                    logLine.put("log", logLevel);
-                    Map<String, String> appEvent = getAppEvent(line);
-                    /** Avoid NULL or not available events */
-                    if (appEvent == null) {
-                        continue;
-                    }
-                    addAppEvent(appEvent, appEvents);
-                    logLine.put("eventName", appEvent.get("name"));
-                    /** Counter */
-                    logLine.put("counter", new Integer(1));
-
-                    /** Event ID */
-                    String id = dateStr + "_" + logLevel + "_" + appEvent;
-
-                    /** Add to event counter */
-                    if (eventCounter.containsKey(id)) {
-                        Map<String, Object> logEvent = (Map<String, Object>) eventCounter.get(id);
-                        logEvent.put("counter", (Integer) logEvent.get("counter") + new Integer(1));
+                    counts = tasks.get(r).join();
+                } else {
+                    counts = countRangeAppEvents(range, level, filterMatcher, parser, null);
+                }
+
+                logLevels.addAll(counts.logLevels);
+                appEvents.putAll(counts.appEvents);
+                for (Map.Entry<String, Object> entry : counts.eventCounter.entrySet()) {
+                    Map<String, Object> logEvent = (Map<String, Object>) eventCounter.get(entry.getKey());
+                    if (logEvent != null) {
+                        Map<String, Object> logLine = (Map<String, Object>) entry.getValue();
+                        logEvent.put("counter", (Integer) logEvent.get("counter") + (Integer) logLine.get("counter"));
                     } else {
-                        eventCounter.put(id, logLine);
+                        eventCounter.put(entry.getKey(), entry.getValue());
                     }
                 }
-                bf.close();
             }
 
             dataBundle.put("logLevels", logLevels);
@@ -318,11 +411,106 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
             this.logLevels = logLevels;
         } catch (Exception e) {
             throw new Exception(e.getMessage());
+        } finally {
+            /** Ranges not needed any more, after an error */
+            for (AppEventCountsTask task : tasks) {
+                task.cancel(false);
+            }
         }
 
         return dataBundle;
     }
 
+    /**
+     * Read the application events of one range of a log file.
+     * 
+     * @param range
+     * @param level
+     * @param filterMatcher - App. event filter, or null
+     * @param parser
+     * @param owner - Task reading the range, to stop when it is cancelled, or null
+     * @return Partial events of the range
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    private AppEventCounts countRangeAppEvents(FileRange range, LogLevels level, AppEventMatcher filterMatcher,
+            TimestampParser parser, ForkJoinTask<?> owner) throws IOException {
+        AppEventCounts counts = new AppEventCounts();
+        Map<String, Object> eventCounter = counts.eventCounter;
+
+        /** Dates limits */
+        long initTime = initDate.getTime();
+        long endTime = endDate.getTime();
+
+        /** Read log file */
+        LineSource lines = openLogFile(range);
+        try {
+            while (lines.nextLine()) {
+                if (owner != null && owner.isCancelled()) {
+                    break;
+                }
+                CharSequence line = lines.getLine();
+
+                /** Skip level lines if level is not null */
+                if (level != null && !isLineOfLevel(line, level)) {
+                    continue;
+                }
+
+                /** Skip log line if app. event filter is not null */
+                if (filterMatcher != null && !filterMatcher.contains(line)) {
+                    continue;
+                }
+
+                /** Assuming that the line starts with the date. If this is not true, skip this line */
+                long logTime = parser.parse(line);
+                if (logTime == TimestampParser.INVALID) {
+                    continue;
+                }
+
+                /** Check dates. The range boundaries are events, so check the lines out of the dates anyway */
+                if (logTime > endTime || logTime < initTime) {
+                    continue;
+                }
+                String dateStr = parser.getDate(line);
+
+                Map<String, Object> logLine = new HashMap<String, Object>();
+                logLine.put("date", dateStr);
+                /** Is log level available? */
+                String logLevel = getLineLevel(line).getLevel();
+                if (!isLogLevelAvailable(logLevel)) {
+                    continue;
+                }
+                counts.logLevels.add(logLevel);
+                logLine.put("log", logLevel);
+                int appEvent = getAppEventId(line);
+                /** Avoid not available events */
+                if (appEvent == AppEventMatcher.NONE) {
+                    continue;
+                }
+                addAppEvent(appEvent, counts.appEvents);
+                String eventName = appEventMatcher.getName(appEvent);
+                logLine.put("eventName", eventName);
+                /** Counter */
+                logLine.put("counter", new Integer(1));
+
+                /** Event ID */
+                String id = dateStr + "_" + logLevel + "_" + eventName;
+
+                /** Add to event counter */
+                if (eventCounter.containsKey(id)) {
+                    Map<String, Object> logEvent = (Map<String, Object>) eventCounter.get(id);
+                    logEvent.put("counter", (Integer) logEvent.get("counter") + new Integer(1));
+                } else {
+                    eventCounter.put(id, logLine);
+                }
+            }
+        } finally {
+            lines.close();
+        }
+
+        return counts;
+    }
+
     /**
      * This class implements a compartor for dates.
      * 
@@ -330,49 +518,252 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
      */
     class DateComparator implements Comparator {
 
-        /** Date pattern */
-        private String datePattern;
+        /** Date parser */
+        private TimestampParser dateParser;
         /** Ordering, default is descendant */
         private String order = "desc";
 
         public DateComparator(String datePattern) {
-            this.datePattern = datePattern.split(" ")[0];
+            this.dateParser = TimestampParser.compile(datePattern.split(" ")[0]);
         }
 
         public DateComparator(String datePattern, String order) {
-            this.datePattern = datePattern.split(" ")[0];
+            this.dateParser = TimestampParser.compile(datePattern.split(" ")[0]);
             this.order = order;
         }
 
         @Override
         public int compare(Object id1, Object id2) {
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
+            long o1 = dateParser.parse((String) id1);
+            long o2 = dateParser.parse((String) id2);
+            if (o1 == TimestampParser.INVALID || o2 == TimestampParser.INVALID) {
+                return 0;
+            }
 
-                Date o1 = sdf.parse((String) id1);
-                Date o2 = sdf.parse((String) id2);
+            /** Order in ascendant order */
+            if (order.equals("asc")) {
+                if (o1 < o2) {
+                    return -1;
+                } else if (o1 > o2) {
+                    return 1;
+                }
+            } else {
+                if (o1 < o2) {
+                    return 1;
+                } else if (o1 > o2) {
+                    return -1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Ranges of the log files to scan, in files order. Each file is reduced to the part between the init and end
+     * dates with a binary search, and it is cut in ranges only when it is reached, so the files older than the
+     * requested dates are never opened.
+     * 
+     * @author lagarcia
+     */
+    private static final class ScanRanges {
+        private final File[] logFiles;
+        private final long rangeSize;
+        private final TimestampParser parser;
+        private final long initTime;
+        private final long endTime;
+
+        /** Ranges of the files already cut */
+        private final List<FileRange> ranges = new ArrayList<FileRange>();
+        private int nextFile;
+
+        /**
+         * Constructor
+         * 
+         * @param logFilesArg - Log files in date descending order
+         * @param rangeSizeArg - Size of the ranges, 0 to scan each file as a single range
+         * @param parserArg
+         * @param initTimeArg
+         * @param endTimeArg
+         */
+        ScanRanges(File[] logFilesArg, long rangeSizeArg, TimestampParser parserArg, long initTimeArg,
+                long endTimeArg) {
+            this.logFiles = logFilesArg;
+            this.rangeSize = rangeSizeArg;
+            this.parser = parserArg;
+            this.initTime = initTimeArg;
+            this.endTime = endTimeArg;
+        }
 
-                /** Order in ascendant order */
-                if (order.equals("asc")) {
-                    if (o1.before(o2)) {
-                        return -1;
-                    } else if (o1.after(o2)) {
-                        return 1;
+        /**
+         * Get a range.
+         * 
+         * @param index
+         * @return The range, or null when there are no more ranges
+         * @throws IOException
+         */
+        FileRange get(int index) throws IOException {
+            while (ranges.size() <= index && nextFile < logFiles.length) {
+                File logFile = logFiles[nextFile++];
+                LogFileSeeker seeker = new LogFileSeeker(logFile, parser);
+                try {
+                    /** The older files are before the init date too */
+                    long firstTime = seeker.getFirstTime();
+                    if (firstTime != TimestampParser.INVALID && firstTime < initTime) {
+                        nextFile = logFiles.length;
                     }
-                } else {
-                    if (o1.before(o2)) {
-                        return 1;
-                    } else if (o1.after(o2)) {
-                        return -1;
+
+                    long start = seeker.seek(initTime);
+                    long end = seeker.seekAfter(endTime);
+                    if (start < end) {
+                        /** Up to the end of the file, the events written meanwhile are within the dates too */
+                        long rangeEnd = end < seeker.length() ? end : -1;
+                        ranges.addAll(LogFileSplitter.split(logFile, start, rangeEnd, rangeSize, parser));
                     }
+                } finally {
+                    seeker.close();
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
-            return 0;
+
+            return index < ranges.size() ? ranges.get(index) : null;
         }
     }
 
+    /**
+     * Task counting the events per date of one log file range.
+     * 
+     * @author lagarcia
+     */
+    private final class EventCountsTask extends RecursiveTask<List<Map<String, Integer>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileRange range;
+        private final List<LogLevels> levels;
+        private final TimestampParser parser;
+
+        /**
+         * Constructor
+         * 
+         * @param rangeArg
+         * @param levelsArg
+         * @param parserArg
+         */
+        EventCountsTask(FileRange rangeArg, List<LogLevels> levelsArg, TimestampParser parserArg) {
+            this.range = rangeArg;
+            this.levels = levelsArg;
+            this.parser = parserArg;
+        }
+
+        /**
+         * @see RecursiveTask#compute()
+         */
+        @Override
+        protected List<Map<String, Integer>> compute() {
+            try {
+                return countRangeEvents(range, levels, parser, this);
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Partial application events of one log file range.
+     * 
+     * @author lagarcia
+     */
+    private static final class AppEventCounts {
+        /** Events and counters, by entering order */
+        private final Map<String, Object> eventCounter = new LinkedHashMap<String, Object>();
+        /** Available log levels */
+        private final Set<String> logLevels = new TreeSet<String>();
+        /** Available app. events */
+        private final Map<String, String> appEvents = new TreeMap<String, String>();
+    }
+
+    /**
+     * Task reading the application events of one log file range.
+     * 
+     * @author lagarcia
+     */
+    private final class AppEventCountsTask extends RecursiveTask<AppEventCounts> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileRange range;
+        private final LogLevels level;
+        private final AppEventMatcher filterMatcher;
+        private final TimestampParser parser;
+
+        /**
+         * Constructor
+         * 
+         * @param rangeArg
+         * @param levelArg
+         * @param filterMatcherArg
+         * @param parserArg
+         */
+        AppEventCountsTask(FileRange rangeArg, LogLevels levelArg, AppEventMatcher filterMatcherArg,
+                TimestampParser parserArg) {
+            this.range = rangeArg;
+            this.level = levelArg;
+            this.filterMatcher = filterMatcherArg;
+            this.parser = parserArg;
+        }
+
+        /**
+         * @see RecursiveTask#compute()
+         */
+        @Override
+        protected AppEventCounts compute() {
+            try {
+                return countRangeAppEvents(range, level, filterMatcher, parser, this);
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Return scanMode attribute.
+     * 
+     * @return scanMode - Attribute returned
+     */
+    public final ScanMode getScanMode() {
+        return scanMode;
+    }
+
+    /**
+     * Set attribute scanMode. In MAPPED mode the log lines are checked on their raw bytes read as ISO-8859-1, while
+     * READER decodes them with the platform charset. An application event with non-ASCII chars, such as an accented
+     * letter, is only found in MAPPED mode if the log files are written in ISO-8859-1.
+     * 
+     * @param scanModeArg - Set value
+     */
+    public final void setScanMode(ScanMode scanModeArg) {
+        scanMode = scanModeArg;
+    }
+
+    /**
+     * Set the number of log files scanned concurrently. With 1 or less the files are scanned sequentially.
+     * 
+     * @param parallelism
+     */
+    public final synchronized void setParallelism(int parallelism) {
+        if (scanPool != null) {
+            scanPool.shutdown();
+        }
+        scanPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Set the size of the ranges the big log files are cut in, so a single file is scanned by several workers of the
+     * pool. With 0 or less each file is scanned by a single worker.
+     * 
+     * @param splitSizeArg - Range size, in bytes
+     */
+    public final void setSplitSize(long splitSizeArg) {
+        splitSize = splitSizeArg;
+    }
+
     /**
      * Set attribute appEventList.
      * 
@@ -380,6 +771,7 @@ public class StatisticsService extends SuperService implements StatisticsInterfa
      */
     public final void setAppEventList(Map<String, String> appEventListArg) {
         appEventList = appEventListArg;
+        appEventMatcher = AppEventMatcher.compile(appEventListArg);
     }
 
     /**
@@ -1,20 +1,34 @@
 package net.luisalbertogh.log4jstats.services.logfiles;
 
 import java.io.File;
-import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import net.luisalbertogh.log4jstats.interfaces.LogEventHandler;
+import net.luisalbertogh.log4jstats.interfaces.LogLineHandler;
+import net.luisalbertogh.log4jstats.interfaces.LogSourceHandler;
 import net.luisalbertogh.log4jstats.services.SuperService;
+import net.luisalbertogh.log4jstats.utils.AppEventMatcher;
+import net.luisalbertogh.log4jstats.utils.FileRange;
+import net.luisalbertogh.log4jstats.utils.LogEvent;
+import net.luisalbertogh.log4jstats.utils.LogFileSeeker;
 import net.luisalbertogh.log4jstats.utils.LogLevels;
+import net.luisalbertogh.log4jstats.utils.MappedLineScanner;
+import net.luisalbertogh.log4jstats.utils.ReverseLineReader;
+import net.luisalbertogh.log4jstats.utils.SourceRange;
+import net.luisalbertogh.log4jstats.utils.TimestampParser;
 
 /**
  * This class implements the service for the log events table function.
@@ -23,6 +37,9 @@ import net.luisalbertogh.log4jstats.utils.LogLevels;
  */
 public class TableService extends SuperService {
 
+    /** Maximum length of the first line identifying a log file */
+    private static final int FIRST_LINE_LENGTH = 1024;
+
     /** Current log levels */
     private Set<String> logLevels;
 
@@ -32,6 +49,9 @@ public class TableService extends SuperService {
     /** Keyword to filter in */
     private String keyword;
 
+    /** Keyword matcher, null if there is no keyword */
+    private AppEventMatcher keywordMatcher;
+
     /**
      * Default constructor
      * 
@@ -44,36 +64,6 @@ public class TableService extends SuperService {
         this.maxNumberOfDates = maxNumberOfDates;
     }
 
-    /**
-     * Read a file line, given a file pointer, until it finds the end of line char.
-     * 
-     * @param raf
-     * @param filePointer
-     * @return
-     * @throws Exception
-     */
-    private String readFileLine(RandomAccessFile raf, long filePointer) throws Exception {
-        StringBuilder line = new StringBuilder();
-
-        byte readByte;
-        do {
-            readByte = raf.readByte();
-            filePointer--;
-            if (filePointer > -1) {
-                raf.seek(filePointer);
-            }
-
-            /** Use the right encoding */
-            line.append(new String(new byte[] {readByte }, "ISO-8859-1"));
-            /** End of line */
-            if (((char) readByte) == '\n' || ((char) readByte) == '\r') {
-                break;
-            }
-        } while (filePointer > -1);
-
-        return line.reverse().toString();
-    }
-
     /**
      * Get the data of the logging system for table rendering.
      * 
@@ -92,12 +82,17 @@ public class TableService extends SuperService {
         /** Log counter - First row in table start in 1 */
         int counter = 0;
 
-        /** Random access file */
-        RandomAccessFile raf = null;
+        /** Reverse line reader */
+        ReverseLineReader reader = null;
 
         try {
+            /** Timestamp parser and dates limits */
+            TimestampParser parser = getTimestampParser(datePattern);
+            long initTime = initDate.getTime();
+            long endTime = endDate.getTime();
+
             /** Log files */
-            File[] logFiles = initLogFiles(logsDir);
+            File[] logFiles = initLogFiles(logsDir, parser);
 
             /** Available log levels */
             logLevels = new TreeSet<String>();
@@ -108,82 +103,50 @@ public class TableService extends SuperService {
             /** Iterate over the log files. Each files are already ordered by date */
             for (File logFile : logFiles) {
                 /** Let us read the file from last line to first line, so events will appear in descending order */
-                raf = new RandomAccessFile(logFile, "r");
-                /** Exclude EOF char */
-                long fileSize = logFile.length() - 1;
-                /** File pointer set to read first char */
-                long filePointer = fileSize - 1;
-                if (filePointer < 0) {
-                    continue;
-                }
-                raf.seek(filePointer);
+                reader = new ReverseLineReader(logFile, seekEndDate(logFile, parser, endTime));
 
                 /** Read log file line */
                 String line = "";
-                while (filePointer > -1 && (line = readFileLine(raf, filePointer)) != null) {
-                    /** Recalculate file pointer position to read next line in next iteration */
-                    filePointer -= line.length();
-
-                    /** Remove end of line chars at the beginning of the line, if exists */
-                    if (line.charAt(0) == '\n' || line.charAt(0) == '\r') {
-                        line = line.substring(1);
-                    }
-
+                while ((line = reader.readLine()) != null) {
                     /** Skip level lines if level is not null */
-                    if (level != null) {
-                        String levelStr = level.getLevel();
-                        if (line.indexOf(levelStr) == -1) {
-                            continue;
-                        }
+                    if (level != null && !isLineOfLevel(line, level)) {
+                        continue;
                     }
 
-                    /** Avoid non-log event lines */
-                    String fullDateStr = "";
-                    try {
-                        StringTokenizer st = new StringTokenizer(line, " ");
-                        /** Assuming that date are always the first two words */
-                        String dateStr = st.nextToken();
-                        String timeStr = st.nextToken();
-                        fullDateStr = dateStr + " " + timeStr;
-                        /** If this is not true, skip this line */
-                        SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
-                        Date logDate = sdf.parse(fullDateStr);
-
-                        /** Check dates. If log date is after end date, cotinue to next log line */
-                        if (logDate.after(endDate)) {
-                            continue;
-                        }
-                        /** If date is before initDate, finish processing data */
-                        else if (logDate.before(initDate)) {
-                            if (raf != null) {
-                                raf.close();
-                            }
+                    /** Avoid non-log event lines. Assuming that the line starts with the date */
+                    long logTime = parser.parse(line);
+                    if (logTime == TimestampParser.INVALID) {
+                        continue;
+                    }
 
-                            return dataset;
+                    /** Check dates. If log date is after end date, cotinue to next log line */
+                    if (logTime > endTime) {
+                        continue;
+                    }
+                    /** If date is before initDate, finish processing data */
+                    else if (logTime < initTime) {
+                        if (reader != null) {
+                            reader.close();
                         }
 
-                    } catch (Exception e) {
-                        /** Skip problematic parsing */
-                        continue;
+                        return dataset;
                     }
 
                     /** Is log level available? */
-                    String logLevel = getLevel(line).getLevel();
+                    String logLevel = getLineLevel(line).getLevel();
                     if (!isLogLevelAvailable(logLevel)) {
                         continue;
                     }
 
                     /** Avoid NULL or not available events */
-                    Map<String, String> appEvent = getAppEvent(line);
-                    if (appEvent == null) {
+                    int appEvent = getAppEventId(line);
+                    if (appEvent == AppEventMatcher.NONE) {
                         continue;
                     }
 
                     /** Check keyword, if exists */
-                    if (keyword != null && !"".equals(keyword)) {
-                        if (line.toLowerCase().indexOf(keyword) == -1) {
-                            continue;
-                        }
+                    if (keywordMatcher != null && !keywordMatcher.contains(line)) {
+                        continue;
                     }
 
                     /** Increment counter first */
@@ -199,7 +162,7 @@ public class TableService extends SuperService {
                     }
 
                     Map<String, String> logLine = new HashMap<String, String>();
-                    logLine.put("date", fullDateStr);
+                    logLine.put("date", parser.getTimestamp(line));
                     logLine.put("level", logLevel);
                     logLine.put("text", line);
 
@@ -210,24 +173,359 @@ public class TableService extends SuperService {
                 }
 
                 /** Close stream */
-                raf.close();
+                reader.close();
 
                 /** Finish adding events to the final dataset */
-                if (counter >= end) {
+                if (end != -1 && counter >= end) {
                     break;
                 }
             }
         } catch (Exception e) {
             throw e;
         } finally {
-            if (raf != null) {
-                raf.close();
+            if (reader != null) {
+                reader.close();
             }
         }
 
         return dataset;
     }
 
+    /**
+     * Read the log events within the dates interval, from the oldest to the newest, and pass them to the handler. Each
+     * log file is read once, from the first event of the init date to the last event of the end date.
+     * 
+     * @param datePattern
+     * @param logsDir
+     * @param handler
+     * @throws Exception
+     */
+    public void readEvents(String datePattern, String logsDir, LogEventHandler handler) throws Exception {
+        readLines(datePattern, logsDir, new EventLineHandler(datePattern, handler));
+    }
+
+    /**
+     * Read the log events within the dates interval from the server via HTTP, from the oldest to the newest, and pass
+     * them to the handler. The log file of each day is requested once.
+     * 
+     * @param url
+     * @param baseName - Log files base name on server
+     * @param datePattern
+     * @param handler
+     * @throws Exception
+     */
+    public void readEventsByHTTP(String url, String baseName, String datePattern, LogEventHandler handler)
+            throws Exception {
+        readLinesByHTTP(url, baseName, new EventLineHandler(datePattern, handler));
+    }
+
+    /**
+     * Read the lines of the log files within the dates interval, from the oldest to the newest, and pass them to the
+     * handler without parsing them. Each log file is read once, from the first event of the init date to the last
+     * event of the end date; the lines must still be checked with getLogEvent.
+     * 
+     * @param datePattern
+     * @param logsDir
+     * @param handler
+     * @throws Exception
+     */
+    public void readLines(String datePattern, String logsDir, LogLineHandler handler) throws Exception {
+        /** Timestamp parser and dates limits */
+        TimestampParser parser = getTimestampParser(datePattern);
+        long initTime = initDate.getTime();
+        long endTime = endDate.getTime();
+
+        /** Log files, from the oldest one */
+        File[] logFiles = initLogFiles(logsDir, parser);
+        for (int i = logFiles.length - 1; i >= 0; i--) {
+            /** Dates range of the file */
+            LogFileSeeker seeker = new LogFileSeeker(logFiles[i], parser);
+            FileRange range;
+            try {
+                long start = seeker.seek(initTime);
+                long end = seeker.seekAfter(endTime);
+                if (start >= end) {
+                    continue;
+                }
+                range = new FileRange(logFiles[i], start, end < seeker.length() ? end : -1);
+            } finally {
+                seeker.close();
+            }
+
+            MappedLineScanner scanner = new MappedLineScanner(range);
+            try {
+                while (scanner.nextLine()) {
+                    if (!handler.handleLine(scanner.getLine())) {
+                        return;
+                    }
+                }
+            } finally {
+                scanner.close();
+            }
+        }
+    }
+
+    /**
+     * Read the lines of the log files within the dates interval from the server via HTTP, from the oldest to the
+     * newest, and pass them to the handler without parsing them. The log file of each day is requested once.
+     * 
+     * @param url
+     * @param baseName - Log files base name on server
+     * @param handler
+     * @throws Exception
+     */
+    public void readLinesByHTTP(String url, String baseName, LogLineHandler handler) throws Exception {
+        Calendar day = (Calendar) initCal.clone();
+        while (day.before(endCal)) {
+            String[] logFile = getLogFileByHTTP(url, baseName, day.getTime());
+            for (int i = 0; i < logFile.length; i++) {
+                if (!handler.handleLine(trimLine(logFile[i]))) {
+                    return;
+                }
+            }
+
+            /** Next day */
+            day.add(Calendar.DATE, 1);
+        }
+    }
+
+    /**
+     * Read the lines of the log files within the dates interval, from the oldest to the newest, and pass them to the
+     * handler with their positions. The handler tells the ranges of each file handled in previous readings, so their
+     * lines are skipped and the lines read either go on a range handled or start a new one. A range whose last event
+     * is not found in the file any more belongs to a previous content of the file, and is read again. A line not
+     * complete yet at the end of a file is left for the next reading, as well as a file whose first line is not
+     * complete.
+     * 
+     * @param datePattern
+     * @param logsDir
+     * @param handler
+     * @throws Exception
+     */
+    public void readSources(String datePattern, String logsDir, LogSourceHandler handler) throws Exception {
+        /** Timestamp parser and dates limits */
+        TimestampParser parser = getTimestampParser(datePattern);
+        long initTime = initDate.getTime();
+        long endTime = endDate.getTime();
+
+        /** Log files, from the oldest one */
+        File[] logFiles = initLogFiles(logsDir, parser);
+        for (int i = logFiles.length - 1; i >= 0; i--) {
+            /** Ranges of the file not read yet within the dates */
+            LogFileSeeker seeker = new LogFileSeeker(logFiles[i], parser);
+            List<long[]> ranges;
+            try {
+                String firstLine = seeker.getFirstLine(FIRST_LINE_LENGTH);
+                if (firstLine == null) {
+                    continue;
+                }
+                long length = seeker.getCompleteLength();
+                List<SourceRange> handled = handler.startSource(logFiles[i].getPath(), getFileKey(logFiles[i]),
+                        firstLine, length);
+                if (handled == null) {
+                    continue;
+                }
+                List<SourceRange> kept = new ArrayList<SourceRange>();
+                for (SourceRange range : handled) {
+                    if (range.getLastTime() == TimestampParser.INVALID
+                            || seeker.hasEvent(range.getLastTime(), range.getEnd())) {
+                        kept.add(range);
+                    }
+                }
+                ranges = getRangesToRead(kept, seeker.seek(initTime), Math.min(seeker.seekAfter(endTime), length));
+            } finally {
+                seeker.close();
+            }
+
+            for (long[] range : ranges) {
+                handler.startRange(range[0], range[1]);
+                MappedLineScanner scanner = new MappedLineScanner(new FileRange(logFiles[i], range[1], range[2]));
+                try {
+                    while (scanner.nextLine()) {
+                        if (!handler.handleLine(scanner.getLine(), scanner.getNextLinePosition())) {
+                            return;
+                        }
+                    }
+                } finally {
+                    scanner.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the identity of a log file, which does not change when the file is renamed by a rolling appender.
+     * 
+     * @param logFile
+     * @return The file key of the file system, or the creation time of the file if there is none
+     * @throws IOException
+     */
+    private static String getFileKey(File logFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(logFile.toPath(), BasicFileAttributes.class);
+        if (attributes.fileKey() != null) {
+            return attributes.fileKey().toString();
+        }
+
+        return "created " + attributes.creationTime().toMillis();
+    }
+
+    /**
+     * Get the ranges of a file to read between two positions, leaving out the ranges handled before. Each range goes
+     * on the range handled that ends where it starts, so the ranges handled grow without gaps and the lines before a
+     * range handled are read as a range of their own.
+     * 
+     * @param handled - Ranges handled, in any order
+     * @param from - Position of the first line wanted
+     * @param to - Position after the last line wanted
+     * @return Ranges to read as {start of the range handled they go on or their own start, start, end}
+     */
+    private static List<long[]> getRangesToRead(List<SourceRange> handled, long from, long to) {
+        /** Ranges handled, merged when they overlap or touch */
+        List<SourceRange> sorted = new ArrayList<SourceRange>(handled);
+        Collections.sort(sorted, new Comparator<SourceRange>() {
+            @Override
+            public int compare(SourceRange o1, SourceRange o2) {
+                return Long.valueOf(o1.getStart()).compareTo(Long.valueOf(o2.getStart()));
+            }
+        });
+        List<long[]> merged = new ArrayList<long[]>();
+        for (SourceRange range : sorted) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range.getStart() <= last[1]) {
+                last[1] = Math.max(last[1], range.getEnd());
+            } else {
+                merged.add(new long[] {range.getStart(), range.getEnd() });
+            }
+        }
+
+        /** Gaps between them */
+        List<long[]> ranges = new ArrayList<long[]>();
+        long pos = from;
+        long rangeStart = from;
+        for (long[] range : merged) {
+            if (pos >= to) {
+                break;
+            }
+            if (range[1] < pos) {
+                continue;
+            }
+            if (range[0] > pos) {
+                ranges.add(new long[] {rangeStart, pos, Math.min(range[0], to) });
+                pos = range[0];
+            }
+            rangeStart = range[0];
+            pos = Math.max(pos, range[1]);
+        }
+        if (pos < to) {
+            ranges.add(new long[] {rangeStart, pos, to });
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Read the lines of the log files within the dates interval from the server via HTTP, from the oldest to the
+     * newest, and pass them to the handler with their positions. The position of a line is its number within the log
+     * file of its day, and the URL of the file is its identity.
+     * 
+     * @param url
+     * @param baseName - Log files base name on server
+     * @param handler
+     * @throws Exception
+     */
+    public void readSourcesByHTTP(String url, String baseName, LogSourceHandler handler) throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        Calendar day = (Calendar) initCal.clone();
+        while (day.before(endCal)) {
+            String[] logFile = getLogFileByHTTP(url, baseName, day.getTime());
+            String path = url + "?logFile=" + baseName + sdf.format(day.getTime());
+            String firstLine = logFile.length != 0 ? trimLine(logFile[0]) : null;
+            List<SourceRange> handled = firstLine != null ? handler.startSource(path, path, firstLine,
+                    logFile.length) : null;
+            List<long[]> ranges = handled != null ? getRangesToRead(handled, 0, logFile.length)
+                    : new ArrayList<long[]>();
+            for (long[] range : ranges) {
+                handler.startRange(range[0], range[1]);
+                for (int i = (int) range[1]; i < range[2]; i++) {
+                    if (!handler.handleLine(trimLine(logFile[i]), i + 1)) {
+                        return;
+                    }
+                }
+            }
+
+            /** Next day */
+            day.add(Calendar.DATE, 1);
+        }
+    }
+
+    /**
+     * Remove the end of line char at the beginning of a line read via HTTP, if exists.
+     * 
+     * @param line
+     * @return
+     */
+    private static String trimLine(String line) {
+        if (line.length() != 0 && (line.charAt(0) == '\n' || line.charAt(0) == '\r')) {
+            return line.substring(1);
+        }
+
+        return line;
+    }
+
+    /**
+     * Get the log event of a log line, applying the same filters than the events table. This method may be called
+     * from several threads.
+     * 
+     * @param datePattern
+     * @param line
+     * @return The log event, or null if the line is not shown in the table
+     */
+    public LogEvent getLogEvent(String datePattern, CharSequence line) {
+        /** Avoid non-log event lines and events out of the dates */
+        TimestampParser parser = getTimestampParser(datePattern);
+        long logTime = parser.parse(line);
+        if (logTime == TimestampParser.INVALID || logTime < initDate.getTime() || logTime > endDate.getTime()) {
+            return null;
+        }
+
+        /** Is log level available? */
+        String logLevel = getLineLevel(line).getLevel();
+        if (!isLogLevelAvailable(logLevel)) {
+            return null;
+        }
+
+        /** Avoid NULL or not available events */
+        if (getAppEventId(line) == AppEventMatcher.NONE) {
+            return null;
+        }
+
+        /** Check keyword, if exists */
+        if (keywordMatcher != null && !keywordMatcher.contains(line)) {
+            return null;
+        }
+
+        return new LogEvent(parser.getTimestamp(line), logTime, logLevel, line.toString());
+    }
+
+    /**
+     * Find the position of the first log event after the end date, so the file is read backwards from there.
+     * 
+     * @param logFile
+     * @param parser
+     * @param endTime
+     * @return Position of the event, or -1 to read the whole file
+     * @throws Exception
+     */
+    private long seekEndDate(File logFile, TimestampParser parser, long endTime) throws Exception {
+        LogFileSeeker seeker = new LogFileSeeker(logFile, parser);
+        try {
+            long end = seeker.seekAfter(endTime);
+            return end < seeker.length() ? end : -1;
+        } finally {
+            seeker.close();
+        }
+    }
+
     /**
      * Get the data of the logging system for table rendering.
      * 
@@ -251,6 +549,11 @@ public class TableService extends SuperService {
             /** Log files content */
             List<String[]> logFiles = getLogFilesByHTTP(url, baseName);
 
+            /** Timestamp parser and dates limits */
+            TimestampParser parser = getTimestampParser(datePattern);
+            long initTime = initDate.getTime();
+            long endTime = endDate.getTime();
+
             /** Available log levels */
             logLevels = new TreeSet<String>();
 
@@ -268,56 +571,40 @@ public class TableService extends SuperService {
                     }
 
                     /** Skip level lines if level is not null */
-                    if (level != null) {
-                        String levelStr = level.getLevel();
-                        if (line.indexOf(levelStr) == -1) {
-                            continue;
-                        }
+                    if (level != null && !isLineOfLevel(line, level)) {
+                        continue;
                     }
 
-                    /** Avoid non-log event lines */
-                    String fullDateStr = "";
-                    try {
-                        StringTokenizer st = new StringTokenizer(line, " ");
-                        /** Assuming that date are always the first two words */
-                        String dateStr = st.nextToken();
-                        String timeStr = st.nextToken();
-                        fullDateStr = dateStr + " " + timeStr;
-                        /** If this is not true, skip this line */
-                        SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
-                        Date logDate = sdf.parse(fullDateStr);
-
-                        /** Check dates. If log date is after end date, return dataset */
-                        if (logDate.after(endDate)) {
-                            return dataset;
-                        }
-                        /** If date is before initDate, continue till initial date */
-                        else if (logDate.before(initDate)) {
-                            continue;
-                        }
+                    /** Avoid non-log event lines. Assuming that the line starts with the date */
+                    long logTime = parser.parse(line);
+                    if (logTime == TimestampParser.INVALID) {
+                        continue;
+                    }
 
-                    } catch (Exception e) {
-                        /** Skip problematic parsing */
+                    /** Check dates. If log date is after end date, return dataset */
+                    if (logTime > endTime) {
+                        return dataset;
+                    }
+                    /** If date is before initDate, continue till initial date */
+                    else if (logTime < initTime) {
                         continue;
                     }
 
                     /** Is log level available? */
-                    String logLevel = getLevel(line).getLevel();
+                    String logLevel = getLineLevel(line).getLevel();
                     if (!isLogLevelAvailable(logLevel)) {
                         continue;
                     }
 
                     /** Avoid NULL or not available events */
-                    Map<String, String> appEvent = getAppEvent(line);
-                    if (appEvent == null) {
+                    int appEvent = getAppEventId(line);
+                    if (appEvent == AppEventMatcher.NONE) {
                         continue;
                     }
 
                     /** Check keyword, if exists */
-                    if (keyword != null && !"".equals(keyword)) {
-                        if (line.toLowerCase().indexOf(keyword) == -1) {
-                            continue;
-                        }
+                    if (keywordMatcher != null && !keywordMatcher.contains(line)) {
+                        continue;
                     }
 
                     /** Increment counter first */
@@ -333,7 +620,7 @@ public class TableService extends SuperService {
                     }
 
                     Map<String, String> logLine = new HashMap<String, String>();
-                    logLine.put("date", fullDateStr);
+                    logLine.put("date", parser.getTimestamp(line));
                     logLine.put("level", logLevel);
                     logLine.put("text", line);
 
@@ -344,7 +631,7 @@ public class TableService extends SuperService {
                 }
 
                 /** Finish adding events to the final dataset */
-                if (counter >= end) {
+                if (end != -1 && counter >= end) {
                     break;
                 }
             }
@@ -466,6 +753,38 @@ public class TableService extends SuperService {
     public final void setKeyword(String keywordArg) {
         if (keywordArg != null) {
             keyword = keywordArg.trim().toLowerCase();
+            keywordMatcher = "".equals(keyword) ? null : AppEventMatcher.compile(Collections.singletonMap(keyword,
+                    keyword));
+        }
+    }
+
+    /**
+     * Log lines handler passing the log events of the lines to a log events handler.
+     * 
+     * @author lagarcia
+     */
+    private final class EventLineHandler implements LogLineHandler {
+        private final String datePattern;
+        private final LogEventHandler handler;
+
+        /**
+         * Constructor
+         * 
+         * @param datePatternArg
+         * @param handlerArg
+         */
+        EventLineHandler(String datePatternArg, LogEventHandler handlerArg) {
+            this.datePattern = datePatternArg;
+            this.handler = handlerArg;
+        }
+
+        /**
+         * @see LogLineHandler#handleLine(CharSequence)
+         */
+        @Override
+        public boolean handleLine(CharSequence line) throws Exception {
+            LogEvent event = getLogEvent(datePattern, line);
+            return event == null || handler.handleEvent(event);
         }
     }
 }
@@ -3,7 +3,9 @@
  */
 package net.luisalbertogh.log4jstats.services.sqlite;
 
+import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -11,25 +13,41 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import net.luisalbertogh.log4jstats.interfaces.StatisticsInterface;
 import net.luisalbertogh.log4jstats.utils.LogLevels;
+import net.luisalbertogh.sqlite4java.ConnectionPool;
+import net.luisalbertogh.sqlite4java.QueryBuilder;
 import net.luisalbertogh.sqlite4java.Sqlite4JavaTool;
 import net.luisalbertogh.sqlite4java.Sqlite4JavaTool.TimeDivision;
 
 import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteJob;
 import com.almworks.sqlite4java.SQLiteStatement;
 
 /**
- * This class implements the Statistics service using the SQLite DB.
+ * This class implements the Statistics service using the SQLite DB. The counters are read from the rollup table of each
+ * DB file, which keeps the number of events per date, level and app. event, or from the events table of the DB files
+ * created before it.
  * 
  * @author lagarcia
  */
 public class StatisticsSQLService extends SuperSQLService implements StatisticsInterface {
     /** Select number of events per date. */
-    private static final String SELECT_EVENTS_PER_DATE = "SELECT count(*) as num, date FROM logevents ";
+    private static final String SELECT_EVENTS_PER_DATE = "SELECT sum(count) as num, date FROM logevents_rollup ";
 
-    private static final String SELECT_APP_EVENTS = "SELECT count(*) as num, date, level, event FROM logevents ";
+    private static final String SELECT_APP_EVENTS = "SELECT sum(count) as num, date, level, nullif(event, '') "
+            + "FROM logevents_rollup ";
+
+    /** Same selects over the events, for DB files without rollup table. */
+    private static final String SELECT_EVENTS_PER_DATE_RAW = "SELECT count(*) as num, date FROM logevents ";
+
+    private static final String SELECT_APP_EVENTS_RAW = "SELECT count(*) as num, date, level, event FROM logevents ";
+
+    /** Quoted value of an SQL list, with its quotes doubled */
+    private static final Pattern QUOTED_VALUE = Pattern.compile("'((?:[^']|'')*)'");
 
     /** Current app. events */
     private Map<String, String> appEvents;
@@ -79,79 +97,83 @@ public class StatisticsSQLService extends SuperSQLService implements StatisticsI
             boolean showDataChart) throws Exception {
 
         Map<String, Integer> dataset = new TreeMap<String, Integer>();
-        SQLiteConnection db = null;
-        try {
-            /* Simple date format */
-            SimpleDateFormat sdf = new SimpleDateFormat(datePatternArg);
-
-            /* Get the list of DB files to query */
-            String[] dbfilepaths = getDBFilepaths(dbDirArg);
-
-            /* Iterate over the file dbs */
-            int cont = 0;
-            String sqlQuery = SELECT_EVENTS_PER_DATE;
-            for (String dbfilepath : dbfilepaths) {
-                db = Sqlite4JavaTool.openDBConnection(dbfilepath);
-
-                /* Set where clause for each corresponding database */
-                if (dbfilepaths.length == 1) {
-                    /* Only one file is accessed */
-                    sqlQuery += "WHERE date >= '" + sdf.format(initDate) + "' AND date < '" + sdf.format(endDate) + "'";
-                }
-                /* Several DB files must be accesed */
-                else {
-                    if (cont == 0) {
-                        sqlQuery += "WHERE date >= '" + sdf.format(initDate) + "'";
-                    } else if (cont == dbfilepaths.length - 1) {
-                        sqlQuery += "WHERE date < '" + sdf.format(endDate) + "'";
-                    }
-                }
 
-                /* Log levels filter */
-                if (levelArg != null) {
-                    if (sqlQuery.indexOf("WHERE") != -1) {
-                        sqlQuery += " AND level='" + levelArg + "'";
-                    } else {
-                        sqlQuery += " WHERE level='" + levelArg + "'";
-                    }
-                } else {
-                    if (sqlQuery.indexOf("WHERE") != -1) {
-                        sqlQuery += " AND level in(" + getSkipLogLevelsCommaSeparated() + ")";
-                    } else {
-                        sqlQuery += " WHERE level in(" + getSkipLogLevelsCommaSeparated() + ")";
-                    }
-                }
+        /* Simple date format */
+        SimpleDateFormat sdf = new SimpleDateFormat(datePatternArg);
 
-                /* Available for CHARTS only */
-                if (showDataChart) {
-                    if (sqlQuery.indexOf("WHERE") != -1) {
-                        sqlQuery += " AND chart='1'";
-                    } else {
-                        sqlQuery += " WHERE chart='1'";
-                    }
-                }
+        /* Get the list of DB files to query */
+        String[] dbfilepaths = getDBFilepaths(dbDirArg);
+
+        /* Query of each DB file */
+        List<String> queried = new ArrayList<String>();
+        List<SQLiteJob<Map<String, Integer>>> jobs = new ArrayList<SQLiteJob<Map<String, Integer>>>();
 
-                sqlQuery += " GROUP BY date";
+        /* Iterate over the file dbs */
+        int cont = 0;
+        for (String dbfilepath : dbfilepaths) {
+            /* Without events in the period there is no DB file */
+            if (!new File(dbfilepath).isFile()) {
+                cont++;
+                continue;
+            }
+            final QueryBuilder filters = new QueryBuilder();
 
-                SQLiteStatement st = Sqlite4JavaTool.executeStatement(db, sqlQuery, null);
-                while (st.step()) {
-                    int count = st.columnInt(0);
-                    String date = st.columnString(1);
-                    dataset.put(date, count);
+            /* Set where clause for each corresponding database */
+            if (dbfilepaths.length == 1) {
+                /* Only one file is accessed */
+                filters.where("date >= ?", sdf.format(initDate)).where("date < ?", sdf.format(endDate));
+            }
+            /* Several DB files must be accesed */
+            else {
+                if (cont == 0) {
+                    filters.where("date >= ?", sdf.format(initDate));
+                } else if (cont == dbfilepaths.length - 1) {
+                    filters.where("date < ?", sdf.format(endDate));
                 }
-                st.dispose();
-                db.dispose();
+            }
 
-                /* Increase counter */
-                cont++;
-                sqlQuery = SELECT_EVENTS_PER_DATE;
+            /* Log levels filter */
+            if (levelArg != null) {
+                filters.where("level = ?", levelArg.toString());
+            } else {
+                filters.in("level", getSkipLogLevelsAsStrings());
             }
-        } catch (Exception ex) {
-            if (db != null) {
-                db.dispose();
+
+            /* Available for CHARTS only */
+            if (showDataChart) {
+                filters.where("chart = ?", "1");
             }
+            filters.append("GROUP BY date");
+
+            /* Query the DB file on its pooled connection */
+            queried.add(dbfilepath);
+            jobs.add(new SQLiteJob<Map<String, Integer>>() {
+                @Override
+                protected Map<String, Integer> job(SQLiteConnection db) throws Throwable {
+                    Map<String, Integer> counts = new HashMap<String, Integer>();
+                    String select = Sqlite4JavaTool.hasRollupTable(db) ? SELECT_EVENTS_PER_DATE
+                            : SELECT_EVENTS_PER_DATE_RAW;
+                    SQLiteStatement st = filters.prepare(db, select);
+                    try {
+                        while (st.step()) {
+                            int count = st.columnInt(0);
+                            String date = st.columnString(1);
+                            counts.put(date, count);
+                        }
+                    } finally {
+                        st.dispose();
+                    }
+                    return counts;
+                }
+            });
+
+            /* Increase counter */
+            cont++;
+        }
 
-            throw ex;
+        /* All the DB files are queried at the same time and their counters merged in order */
+        for (Map<String, Integer> counts : ConnectionPool.executeAll(queried, jobs)) {
+            dataset.putAll(counts);
         }
 
         return dataset;
@@ -223,96 +245,98 @@ public class StatisticsSQLService extends SuperSQLService implements StatisticsI
         Set<String> logLevels = new TreeSet<String>();
         /** Available app. events */
         Map<String, String> appEvents = new TreeMap<String, String>();
-        /* SQLite DB connection */
-        SQLiteConnection db = null;
 
-        try {
-            /* Simple date format */
-            SimpleDateFormat sdf = new SimpleDateFormat(datePatternArg);
-
-            /* Get the list of DB files to query */
-            String[] dbfilepaths = getDBFilepaths(dbDirArg);
-
-            /* Iterate through the list of files */
-            String sqlQuery = SELECT_APP_EVENTS;
-            int cont = 0;
-            for (String dbfilepath : dbfilepaths) {
-                /* DB connection */
-                db = Sqlite4JavaTool.openDBConnection(dbfilepath);
-
-                /* Set where clause for each corresponding database */
-                if (dbfilepaths.length == 1) {
-                    /* Only one file is accessed */
-                    sqlQuery += "WHERE date >= '" + sdf.format(initDate) + "' AND date < '" + sdf.format(endDate) + "'";
-                }
-                /* Several DB files must be accesed */
-                else {
-                    if (cont == 0) {
-                        sqlQuery += "WHERE date >= '" + sdf.format(initDate) + "'";
-                    } else if (cont == dbfilepaths.length - 1) {
-                        sqlQuery += "WHERE date < '" + sdf.format(endDate) + "'";
-                    }
-                }
+        /* Simple date format */
+        SimpleDateFormat sdf = new SimpleDateFormat(datePatternArg);
 
-                /* Log levels filter */
-                if (sqlQuery.indexOf("WHERE") != -1) {
-                    sqlQuery += " AND level in(" + getSkipLogLevelsCommaSeparated() + ")";
-                } else {
-                    sqlQuery += " WHERE level in(" + getSkipLogLevelsCommaSeparated() + ")";
-                }
+        /* Get the list of DB files to query */
+        String[] dbfilepaths = getDBFilepaths(dbDirArg);
 
-                /* App events filter */
-                if (appEventFilterArg != null) {
-                    if (sqlQuery.indexOf("WHERE") != -1) {
-                        sqlQuery += " AND event in(" + appEventFilterArg + ")";
-                    } else {
-                        sqlQuery += " WHERE event in(" + appEventFilterArg + ")";
-                    }
-                }
+        /* Query of each DB file */
+        List<String> queried = new ArrayList<String>();
+        List<SQLiteJob<List<Map<String, Object>>>> jobs = new ArrayList<SQLiteJob<List<Map<String, Object>>>>();
+
+        /* Iterate through the list of files */
+        int cont = 0;
+        for (String dbfilepath : dbfilepaths) {
+            /* Without events in the period there is no DB file */
+            if (!new File(dbfilepath).isFile()) {
+                cont++;
+                continue;
+            }
+            final QueryBuilder filters = new QueryBuilder();
 
-                /* Available for CHARTS */
-                if (sqlQuery.indexOf("WHERE") != -1) {
-                    sqlQuery += " AND chart='1'";
-                } else {
-                    sqlQuery += " WHERE chart='1'";
+            /* Set where clause for each corresponding database */
+            if (dbfilepaths.length == 1) {
+                /* Only one file is accessed */
+                filters.where("date >= ?", sdf.format(initDate)).where("date < ?", sdf.format(endDate));
+            }
+            /* Several DB files must be accesed */
+            else {
+                if (cont == 0) {
+                    filters.where("date >= ?", sdf.format(initDate));
+                } else if (cont == dbfilepaths.length - 1) {
+                    filters.where("date < ?", sdf.format(endDate));
                 }
+            }
+
+            /* Log levels filter */
+            filters.in("level", getSkipLogLevelsAsStrings());
 
-                sqlQuery += " GROUP BY date, level, event";
-
-                SQLiteStatement st = Sqlite4JavaTool.executeStatement(db, sqlQuery, null);
-                while (st.step()) {
-                    Map<String, Object> logLine = new HashMap<String, Object>();
-                    logLine.put("counter", new Integer(st.columnInt(0)));
-                    logLine.put("date", st.columnString(1));
-                    logLine.put("log", st.columnString(2));
-                    logLine.put("eventName", st.columnString(3));
-                    eventCounter.put(logLine.get("date") + "_" + logLine.get("log") + "_" + logLine.get("eventName"),
-                            logLine);
-
-                    /* Add event name */
-                    Map<String, String> newEvent = new HashMap<String, String>();
-                    newEvent.put("name", (String) logLine.get("eventName"));
-                    newEvent.put("value", (String) logLine.get("eventName"));
-                    addAppEvent(newEvent, appEvents);
-
-                    /* Add log level */
-                    if (!logLevels.contains((String) logLine.get("log"))) {
-                        logLevels.add((String) logLine.get("log"));
+            /* App events filter */
+            if (appEventFilterArg != null) {
+                filters.in("event", getQuotedValues(appEventFilterArg));
+            }
+
+            /* Available for CHARTS */
+            filters.where("chart = ?", "1");
+            filters.append("GROUP BY date, level, event");
+
+            /* Query the DB file on its pooled connection */
+            queried.add(dbfilepath);
+            jobs.add(new SQLiteJob<List<Map<String, Object>>>() {
+                @Override
+                protected List<Map<String, Object>> job(SQLiteConnection db) throws Throwable {
+                    List<Map<String, Object>> logLines = new ArrayList<Map<String, Object>>();
+                    String select = Sqlite4JavaTool.hasRollupTable(db) ? SELECT_APP_EVENTS : SELECT_APP_EVENTS_RAW;
+                    SQLiteStatement st = filters.prepare(db, select);
+                    try {
+                        while (st.step()) {
+                            Map<String, Object> logLine = new HashMap<String, Object>();
+                            logLine.put("counter", new Integer(st.columnInt(0)));
+                            logLine.put("date", st.columnString(1));
+                            logLine.put("log", st.columnString(2));
+                            logLine.put("eventName", st.columnString(3));
+                            logLines.add(logLine);
+                        }
+                    } finally {
+                        st.dispose();
                     }
+                    return logLines;
                 }
-                st.dispose();
-                db.dispose();
+            });
 
-                /* Increase counter */
-                cont++;
-                sqlQuery = SELECT_APP_EVENTS;
-            }
-        } catch (Exception ex) {
-            if (db != null) {
-                db.dispose();
-            }
+            /* Increase counter */
+            cont++;
+        }
 
-            throw ex;
+        /* All the DB files are queried at the same time and their rows merged in order */
+        for (List<Map<String, Object>> logLines : ConnectionPool.executeAll(queried, jobs)) {
+            for (Map<String, Object> logLine : logLines) {
+                eventCounter.put(logLine.get("date") + "_" + logLine.get("log") + "_" + logLine.get("eventName"),
+                        logLine);
+
+                /* Add event name */
+                Map<String, String> newEvent = new HashMap<String, String>();
+                newEvent.put("name", (String) logLine.get("eventName"));
+                newEvent.put("value", (String) logLine.get("eventName"));
+                addAppEvent(newEvent, appEvents);
+
+                /* Add log level */
+                if (!logLevels.contains((String) logLine.get("log"))) {
+                    logLevels.add((String) logLine.get("log"));
+                }
+            }
         }
 
         dataBundle.put("dataset", eventCounter);
@@ -325,6 +349,22 @@ public class StatisticsSQLService extends SuperSQLService implements StatisticsI
         return dataBundle;
     }
 
+    /**
+     * Get the values of an SQL list of quoted strings, such as the app. events filter.
+     * 
+     * @param sqlList
+     * @return
+     */
+    private static List<String> getQuotedValues(String sqlList) {
+        List<String> values = new ArrayList<String>();
+        Matcher matcher = QUOTED_VALUE.matcher(sqlList);
+        while (matcher.find()) {
+            values.add(matcher.group(1).replace("''", "'"));
+        }
+
+        return values;
+    }
+
     /**
      * Return timedivision attribute.
      * 
@@ -3,9 +3,13 @@
  */
 package net.luisalbertogh.log4jstats.services.sqlite;
 
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -14,10 +18,14 @@ import java.util.TreeSet;
 
 import net.luisalbertogh.log4jstats.interfaces.TableInterface;
 import net.luisalbertogh.log4jstats.utils.LogLevels;
+import net.luisalbertogh.sqlite4java.ConnectionPool;
+import net.luisalbertogh.sqlite4java.QueryBuilder;
 import net.luisalbertogh.sqlite4java.Sqlite4JavaTool;
 import net.luisalbertogh.sqlite4java.Sqlite4JavaTool.TimeDivision;
 
 import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteJob;
 import com.almworks.sqlite4java.SQLiteStatement;
 
 /**
@@ -38,11 +46,51 @@ public class TableSQLService extends SuperSQLService implements TableInterface {
     /** Row counter */
     private int rowCounter;
 
-    /** SQL query for log events selection */
-    private static final String SELECT_LOG_EVENTS = "SELECT datetime, level, event, log FROM logevents ";
+    /** DB files left out of the keyword search, as their text search index is not built yet */
+    private List<String> textIndexPending = new ArrayList<String>();
 
-    /** SQL query for text search */
-    private static final String SELECT_TEXT = "SELECT docid FROM logtext WHERE text MATCH ";
+    /** Rows of each DB file with each filters, from the least recently used */
+    private final Map<String, FileRows> rowsCache = new LinkedHashMap<String, FileRows>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileRows> eldest) {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
+
+    /** SQL query for log events selection, with the key of their order */
+    private static final String SELECT_LOG_EVENTS = "SELECT datetime, level, event, log, id FROM logevents ";
+
+    /** SQL query for the id of the last log event added */
+    private static final String SELECT_LAST_ID = "SELECT max(id) FROM logevents";
+
+    /** SQL query for the number of log events per level, app. event and date */
+    private static final String SELECT_COUNTS = "SELECT level, event, count(*), date FROM logevents ";
+
+    /** Same select over the rollup table, for whole days */
+    private static final String SELECT_ROLLUP_COUNTS = "SELECT level, event, sum(count), date FROM logevents_rollup ";
+
+    /** Suffix of a date for the key of its end: it sorts after any time of the date and before the next date */
+    private static final String END_OF_DAY = "~";
+
+    /** SQL condition for the log events after a key. The first term lets the datetime index be sought */
+    private static final String AFTER_KEY = "datetime >= ? AND (datetime > ? OR id > ?)";
+
+    /** SQL condition for the log events before a key */
+    private static final String BEFORE_KEY = "datetime <= ? AND (datetime < ? OR id < ?)";
+
+    /** Order of the table, with the number of rows and the rows to skip */
+    private static final String ORDER_FORWARD = "ORDER BY datetime, id LIMIT ? OFFSET ?";
+
+    /** Reverse order of the table, to read the rows before a key */
+    private static final String ORDER_BACKWARDS = "ORDER BY datetime DESC, id DESC LIMIT ? OFFSET ?";
+
+    /** Maximum number of queries whose rows are kept */
+    private static final int MAX_CACHED_QUERIES = 64;
+
+    /** SQL condition for text search */
+    private static final String MATCH_TEXT = "id in(SELECT docid FROM logtext WHERE logtext MATCH ?)";
 
     /**
      * Default constructor
@@ -76,114 +124,157 @@ public class TableSQLService extends SuperSQLService implements TableInterface {
     public List<Map<String, String>> getEventsData(String datePattern, String dbDirArg, LogLevels level, int start,
             int end) throws Exception {
         List<Map<String, String>> dataset = new ArrayList<Map<String, String>>();
-        SQLiteConnection db = null;
-        try {
-            /* Simple date format */
-            SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
-
-            /* Get the list of DB files to query */
-            String[] dbfilepaths = getDBFilepaths(dbDirArg);
-
-            /** Init available log levels */
-            logLevels = new TreeSet<String>();
-
-            /** Init available app. events */
-            appEvents = new TreeMap<String, String>();
-
-            /* Iterate through the databases */
-            /* DB file counter */
-            int cont = 0;
-            /* Init row counter */
-            rowCounter = 1;
-            String sqlQuery = SELECT_LOG_EVENTS;
-            for (String dbfilepath : dbfilepaths) {
-                db = Sqlite4JavaTool.openDBConnection(dbfilepath);
-
-                /* Set where clause for each corresponding database */
-                if (dbfilepaths.length == 1) {
-                    /* Only one file is accessed */
-                    sqlQuery += "WHERE datetime >= '" + sdf.format(initDate) + "' AND datetime < '"
-                            + sdf.format(endDate) + "'";
-                }
-                /* Several DB files must be accesed */
-                else {
-                    if (cont == 0) {
-                        sqlQuery += "WHERE datetime >= '" + sdf.format(initDate) + "'";
-                    } else if (cont == dbfilepaths.length - 1) {
-                        sqlQuery += "WHERE datetime < '" + sdf.format(endDate) + "'";
-                    }
-                }
 
-                /* Log levels filter */
-                if (sqlQuery.indexOf("WHERE") != -1) {
-                    sqlQuery += " AND level in(" + getSkipLogLevelsCommaSeparated() + ")";
-                } else {
-                    sqlQuery += " WHERE level in(" + getSkipLogLevelsCommaSeparated() + ")";
-                }
+        /* Simple date format */
+        SimpleDateFormat sdf = new SimpleDateFormat(datePattern);
 
-                /* App events filter */
-                if (sqlQuery.indexOf("WHERE") != -1) {
-                    sqlQuery += " AND event in(" + getAppEventsListAsString() + ")";
-                } else {
-                    sqlQuery += " WHERE event in(" + getAppEventsListAsString() + ")";
-                }
+        /* Get the list of DB files to query */
+        String[] dbfilepaths = getDBFilepaths(dbDirArg);
+
+        /** Init available log levels */
+        logLevels = new TreeSet<String>();
+
+        /** Init available app. events */
+        appEvents = new TreeMap<String, String>();
 
-                /* Keyword search */
-                if (keyword != null && !"".equals(keyword)) {
-                    if (sqlQuery.indexOf("WHERE") != -1) {
-                        sqlQuery += " AND id in(" + SELECT_TEXT + "'" + keyword + "')";
-                    } else {
-                        sqlQuery += " WHERE id in(" + SELECT_TEXT + "'" + keyword + "')";
-                    }
+        /** Init DB files without keyword search */
+        textIndexPending = new ArrayList<String>();
+
+        /* Filters of each DB file */
+        List<String> queried = new ArrayList<String>();
+        List<QueryBuilder> queriedFilters = new ArrayList<QueryBuilder>();
+        List<String[]> queriedBounds = new ArrayList<String[]>();
+        List<String> levels = getSkipLogLevelsAsStrings();
+        List<String> events = new ArrayList<String>(getAppEventList().keySet());
+
+        /* Iterate through the databases */
+        /* DB file counter */
+        int cont = 0;
+        for (String dbfilepath : dbfilepaths) {
+            /* Without events in the period there is no DB file */
+            if (!new File(dbfilepath).isFile()) {
+                cont++;
+                continue;
+            }
+            QueryBuilder filters = new QueryBuilder();
+            String[] bounds = new String[2];
+
+            /* Set where clause for each corresponding database */
+            if (dbfilepaths.length == 1) {
+                /* Only one file is accessed */
+                bounds[0] = sdf.format(initDate);
+                bounds[1] = sdf.format(endDate);
+                filters.where("datetime >= ?", bounds[0]).where("datetime < ?", bounds[1]);
+            }
+            /* Several DB files must be accesed */
+            else {
+                if (cont == 0) {
+                    bounds[0] = sdf.format(initDate);
+                    filters.where("datetime >= ?", bounds[0]);
+                } else if (cont == dbfilepaths.length - 1) {
+                    bounds[1] = sdf.format(endDate);
+                    filters.where("datetime < ?", bounds[1]);
                 }
+            }
 
-                /* Perform query and store retrieved data */
-                SQLiteStatement st = Sqlite4JavaTool.executeStatement(db, sqlQuery, null);
-                /* While there is data */
-                while (st.step()) {
-                    Map<String, String> logLine = new HashMap<String, String>();
-                    logLine.put("date", st.columnString(0));
-                    logLine.put("level", st.columnString(1));
-                    logLine.put("event", st.columnString(2));
-                    logLine.put("text", st.columnString(3));
+            /* Log levels filter */
+            filters.in("level", levels);
 
-                    /* Add event name */
-                    Map<String, String> newEvent = new HashMap<String, String>();
-                    newEvent.put("name", (String) logLine.get("event"));
-                    newEvent.put("value", (String) logLine.get("event"));
-                    addAppEvent(newEvent, appEvents);
+            /* App events filter */
+            filters.in("event", events);
 
-                    /* Add log level */
-                    if (!logLevels.contains((String) logLine.get("level"))) {
-                        logLevels.add((String) logLine.get("level"));
-                    }
+            queried.add(dbfilepath);
+            queriedFilters.add(filters);
+            queriedBounds.add(bounds);
 
-                    /* Add only row between table indices */
-                    if (rowCounter >= start && rowCounter <= end) {
-                        dataset.add(logLine);
-                    }
+            /* Increase counter */
+            cont++;
+        }
 
-                    /* Increment row counter */
-                    rowCounter++;
-                }
-                st.dispose();
-                db.dispose();
+        /* Rows of each DB file, counted again only if the DB file or the filters changed */
+        String text = keyword;
+        List<String> cacheKeys = new ArrayList<String>();
+        List<CountJob> countJobs = new ArrayList<CountJob>();
+        for (int i = 0; i < queried.size(); i++) {
+            String cacheKey = queried.get(i) + "\n" + queriedFilters.get(i) + "\n" + text;
+            cacheKeys.add(cacheKey);
+            countJobs.add(new CountJob(queriedFilters.get(i), queriedBounds.get(i), levels, events, text,
+                    rowsCache.get(cacheKey)));
+        }
 
-                /* Increase counter */
-                cont++;
-                sqlQuery = SELECT_LOG_EVENTS;
+        /* The DB files are checked and counted at the same time, without reading their rows */
+        List<FileRows> fileRows = ConnectionPool.executeAll(queried, countJobs);
+        for (int i = 0; i < fileRows.size(); i++) {
+            rowsCache.put(cacheKeys.get(i), fileRows.get(i));
+        }
+
+        /* Only the DB files with rows between table indices are read, seeking from the closest known row */
+        List<String> paged = new ArrayList<String>();
+        List<PageJob> pageJobs = new ArrayList<PageJob>();
+        List<FileRows> pageRows = new ArrayList<FileRows>();
+        rowCounter = 1;
+        for (int i = 0; i < fileRows.size(); i++) {
+            FileCounts counts = fileRows.get(i).counts;
+            if (fileRows.get(i).textIndexPending) {
+                textIndexPending.add(queried.get(i));
+            }
+
+            /* Add event names */
+            for (String name : counts.names) {
+                Map<String, String> newEvent = new HashMap<String, String>();
+                newEvent.put("name", name);
+                newEvent.put("value", name);
+                addAppEvent(newEvent, appEvents);
             }
-        } catch (Exception ex) {
-            if (db != null) {
-                db.dispose();
+
+            /* Add log levels */
+            logLevels.addAll(counts.levels);
+
+            /* Rows of the DB file between table indices, from 0 */
+            int from = Math.max(start, rowCounter) - rowCounter;
+            int to = Math.min(end, rowCounter + counts.count - 1) - rowCounter;
+            if (from <= to) {
+                paged.add(queried.get(i));
+                pageJobs.add(new PageJob(queriedFilters.get(i), text, from, to, fileRows.get(i)));
+                pageRows.add(fileRows.get(i));
             }
 
-            throw ex;
+            /* Increment row counter */
+            rowCounter += counts.count;
+        }
+
+        List<FilePage> pages = ConnectionPool.executeAll(paged, pageJobs);
+        for (int i = 0; i < pages.size(); i++) {
+            FilePage page = pages.get(i);
+            dataset.addAll(page.logLines);
+
+            /* The first and last rows of the page are where the next pages are sought from */
+            if (!page.keys.isEmpty()) {
+                pageRows.get(i).keys.put(pageJobs.get(i).from, page.keys.get(0));
+                pageRows.get(i).keys.put(pageJobs.get(i).from + page.keys.size() - 1,
+                        page.keys.get(page.keys.size() - 1));
+            }
         }
 
         return dataset;
     }
 
+    /**
+     * Copy the filters of a DB file adding the keyword search.
+     * 
+     * @param filters
+     * @param text - Keyword to search, if any
+     * @return Filters with the keyword search
+     */
+    private static QueryBuilder getTextQuery(QueryBuilder filters, String text) {
+        QueryBuilder query = new QueryBuilder(filters);
+        if (text != null && !"".equals(text)) {
+            query.where(MATCH_TEXT, text);
+        }
+
+        return query;
+    }
+
     /**
      * Return logLevels attribute.
      * 
@@ -303,4 +394,381 @@ public class TableSQLService extends SuperSQLService implements TableInterface {
     public int getRowCounter() {
         return this.rowCounter;
     }
+
+    /**
+     * Get the DB files left out of the last keyword search. The text search index of a DB file dumped with the index
+     * deferred is built after its rows, and the search matches whole words only with the index.
+     * 
+     * @return DB file paths
+     */
+    public List<String> getTextIndexPending() {
+        return this.textIndexPending;
+    }
+
+    /**
+     * Number of log events of a DB file, with their levels and app. events.
+     * 
+     * @author lagarcia
+     */
+    private static final class FileCounts {
+        /** Log levels found */
+        private final Set<String> levels = new HashSet<String>();
+
+        /** App. events found */
+        private final Set<String> names = new HashSet<String>();
+
+        /** Number of log lines */
+        private int count;
+
+        /** Number of log lines per date */
+        private final TreeMap<String, Integer> days = new TreeMap<String, Integer>();
+    }
+
+    /**
+     * Log events of a page read from a DB file.
+     * 
+     * @author lagarcia
+     */
+    private static final class FilePage {
+        /** Log lines in order */
+        private final List<Map<String, String>> logLines = new ArrayList<Map<String, String>>();
+
+        /** Key of each log line */
+        private final List<RowKey> keys = new ArrayList<RowKey>();
+    }
+
+    /**
+     * Key of a log event within a DB file, in the order of the table, or of the end of a date: after the last log event
+     * of the date and before the first one of the next date.
+     * 
+     * @author lagarcia
+     */
+    private static final class RowKey {
+        private final String datetime;
+
+        private final long id;
+
+        /**
+         * Constructor
+         * 
+         * @param datetimeArg
+         * @param idArg
+         */
+        RowKey(String datetimeArg, long idArg) {
+            this.datetime = datetimeArg;
+            this.id = idArg;
+        }
+
+        /**
+         * Key of the end of a date.
+         * 
+         * @param date
+         * @return
+         */
+        static RowKey endOfDay(String date) {
+            return new RowKey(date + END_OF_DAY, Long.MAX_VALUE);
+        }
+
+        /**
+         * Is it the end of a date? The rows before it include the row of its position.
+         * 
+         * @return
+         */
+        boolean isEndOfDay() {
+            return id == Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Rows of a DB file with some filters: their number and the keys known, by position. The end of each date is known
+     * from the counts, at the position of its last row, and the keys of the first and last rows of each page when it
+     * is read. They are valid while the DB file is not written.
+     * 
+     * @author lagarcia
+     */
+    private static final class FileRows {
+        /**
+         * Version of the DB file when the rows were counted: its last row id, as the rows are only added, and the
+         * state of its text search index and rollup table, which change the queries without adding rows
+         */
+        private final String version;
+
+        private final FileCounts counts;
+
+        /** Left out of the keyword search? */
+        private final boolean textIndexPending;
+
+        /** Keys by position, from 0 */
+        private final TreeMap<Integer, RowKey> keys = new TreeMap<Integer, RowKey>();
+
+        /**
+         * Constructor
+         * 
+         * @param versionArg
+         * @param countsArg
+         * @param textIndexPendingArg - Left out of the keyword search
+         */
+        FileRows(String versionArg, FileCounts countsArg, boolean textIndexPendingArg) {
+            this.version = versionArg;
+            this.counts = countsArg;
+            this.textIndexPending = textIndexPendingArg;
+
+            /* The rows of a date are the ones between the end of the previous date and the end of the date */
+            int position = 0;
+            for (Map.Entry<String, Integer> day : countsArg.days.entrySet()) {
+                position += day.getValue();
+                keys.put(position - 1, RowKey.endOfDay(day.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Count of the rows of a DB file, unless they were already counted with the same version of the DB file. Without
+     * keyword, the whole days are counted from the rollup table and only the first and last days of the dates interval
+     * from their rows. A DB file whose text search index is not built yet has no rows for a keyword.
+     * 
+     * @author lagarcia
+     */
+    private static final class CountJob extends SQLiteJob<FileRows> {
+        private final QueryBuilder filters;
+
+        /** Init and end datetimes of the DB file, or null if the DB file is not bounded */
+        private final String[] bounds;
+
+        private final List<String> levels;
+
+        private final List<String> events;
+
+        private final String text;
+
+        /** Rows counted before, if any */
+        private final FileRows cached;
+
+        /**
+         * Constructor
+         * 
+         * @param filtersArg
+         * @param boundsArg - Init and end datetimes, or null
+         * @param levelsArg
+         * @param eventsArg
+         * @param textArg - Keyword to search, if any
+         * @param cachedArg - Rows counted before, or null
+         */
+        CountJob(QueryBuilder filtersArg, String[] boundsArg, List<String> levelsArg, List<String> eventsArg,
+                String textArg, FileRows cachedArg) {
+            this.filters = filtersArg;
+            this.bounds = boundsArg;
+            this.levels = levelsArg;
+            this.events = eventsArg;
+            this.text = textArg;
+            this.cached = cachedArg;
+        }
+
+        /**
+         * @see com.almworks.sqlite4java.SQLiteJob#job(com.almworks.sqlite4java.SQLiteConnection)
+         */
+        @Override
+        protected FileRows job(SQLiteConnection db) throws Throwable {
+            /* Read before counting, so a row added meanwhile makes the next query count again */
+            long lastId;
+            SQLiteStatement st = db.prepare(SELECT_LAST_ID, true);
+            try {
+                lastId = st.step() ? st.columnLong(0) : 0;
+            } finally {
+                st.dispose();
+            }
+            boolean textIndexReady = Sqlite4JavaTool.isTextIndexReady(db);
+            boolean rollup = Sqlite4JavaTool.hasRollupTable(db);
+            String version = lastId + " " + textIndexReady + " " + rollup;
+
+            if (cached != null && cached.version.equals(version)) {
+                return cached;
+            }
+            if (text != null && !"".equals(text) && !textIndexReady) {
+                return new FileRows(version, new FileCounts(), true);
+            }
+            return new FileRows(version, count(db, rollup), false);
+        }
+
+        /**
+         * Count the rows per level and app. event.
+         * 
+         * @param db
+         * @param rollup - Has the DB file a rollup table?
+         * @return
+         * @throws SQLiteException
+         */
+        private FileCounts count(SQLiteConnection db, boolean rollup) throws SQLiteException {
+            FileCounts counts = new FileCounts();
+            if ((text != null && !"".equals(text)) || !rollup) {
+                addCounts(db, getTextQuery(filters, text), SELECT_COUNTS, counts);
+                return counts;
+            }
+
+            /* The date is the first part of the datetime */
+            String initDay = bounds[0] != null ? bounds[0].split(" ")[0] : null;
+            String endDay = bounds[1] != null ? bounds[1].split(" ")[0] : null;
+
+            /* Whole days */
+            QueryBuilder days = new QueryBuilder();
+            if (initDay != null) {
+                days.where("date > ?", initDay);
+            }
+            if (endDay != null) {
+                days.where("date < ?", endDay);
+            }
+            addCounts(db, days.in("level", levels).in("event", events), SELECT_ROLLUP_COUNTS, counts);
+
+            /* First day, from the init datetime */
+            if (initDay != null) {
+                QueryBuilder firstDay = new QueryBuilder().where("date = ?", initDay).where("datetime >= ?", bounds[0]);
+                if (initDay.equals(endDay)) {
+                    firstDay.where("datetime < ?", bounds[1]);
+                }
+                addCounts(db, firstDay.in("level", levels).in("event", events), SELECT_COUNTS, counts);
+            }
+
+            /* Last day, until the end datetime */
+            if (endDay != null && !endDay.equals(initDay)) {
+                QueryBuilder lastDay = new QueryBuilder().where("date = ?", endDay).where("datetime < ?", bounds[1]);
+                addCounts(db, lastDay.in("level", levels).in("event", events), SELECT_COUNTS, counts);
+            }
+
+            return counts;
+        }
+
+        /**
+         * Add the number of rows per level, app. event and date of a query.
+         * 
+         * @param db
+         * @param query
+         * @param select - SELECT ... FROM part of the query
+         * @param counts
+         * @throws SQLiteException
+         */
+        private static void addCounts(SQLiteConnection db, QueryBuilder query, String select, FileCounts counts)
+                throws SQLiteException {
+            SQLiteStatement st = query.append("GROUP BY level, event, date").prepare(db, select);
+            try {
+                while (st.step()) {
+                    counts.levels.add(st.columnString(0));
+                    counts.names.add(st.columnString(1));
+                    counts.count += st.columnInt(2);
+                    Integer day = counts.days.get(st.columnString(3));
+                    counts.days.put(st.columnString(3), (day != null ? day : 0) + st.columnInt(2));
+                }
+            } finally {
+                st.dispose();
+            }
+        }
+    }
+
+    /**
+     * Read of the rows of a DB file between two positions. The rows are sought after the closest known row before them,
+     * or before the closest known row after them, so only the rows between that row and the page are skipped: at most
+     * half a date, as the end of each date is known.
+     * 
+     * @author lagarcia
+     */
+    private static final class PageJob extends SQLiteJob<FilePage> {
+        private final QueryBuilder filters;
+
+        private final String text;
+
+        /** Position of the first row, from 0 */
+        private final int from;
+
+        /** Number of rows */
+        private final int limit;
+
+        /** Known row to seek from, or null to read from the first or the last row */
+        private final RowKey anchor;
+
+        /** Rows to skip after the known row */
+        private final int offset;
+
+        /** Read the rows backwards? */
+        private final boolean backwards;
+
+        /**
+         * Constructor
+         * 
+         * @param filtersArg
+         * @param textArg - Keyword to search, if any
+         * @param fromArg - Position of the first row, from 0
+         * @param toArg - Position of the last row
+         * @param rows - Rows of the DB file, with the keys already known
+         */
+        PageJob(QueryBuilder filtersArg, String textArg, int fromArg, int toArg, FileRows rows) {
+            this.filters = filtersArg;
+            this.text = textArg;
+            this.from = fromArg;
+            this.limit = toArg - fromArg + 1;
+
+            /* Closest known rows before and after the page. The end of a date is also after the last row of the page */
+            Map.Entry<Integer, RowKey> before = rows.keys.floorEntry(fromArg - 1);
+            Map.Entry<Integer, RowKey> after = rows.keys.ceilingEntry(toArg);
+            if (after != null && after.getKey() == toArg && !after.getValue().isEndOfDay()) {
+                after = rows.keys.higherEntry(toArg);
+            }
+            int forwardOffset = fromArg - (before != null ? before.getKey() + 1 : 0);
+            int backwardOffset;
+            if (after == null) {
+                backwardOffset = rows.counts.count - toArg - 1;
+            } else {
+                backwardOffset = after.getKey() - toArg - (after.getValue().isEndOfDay() ? 0 : 1);
+            }
+            this.backwards = backwardOffset < forwardOffset;
+            if (backwards) {
+                this.anchor = after != null ? after.getValue() : null;
+                this.offset = backwardOffset;
+            } else {
+                this.anchor = before != null ? before.getValue() : null;
+                this.offset = forwardOffset;
+            }
+        }
+
+        /**
+         * @see com.almworks.sqlite4java.SQLiteJob#job(com.almworks.sqlite4java.SQLiteConnection)
+         */
+        @Override
+        protected FilePage job(SQLiteConnection db) throws Throwable {
+            FilePage page = new FilePage();
+            QueryBuilder query = getTextQuery(filters, text);
+            if (backwards) {
+                if (anchor != null) {
+                    query.where(BEFORE_KEY, anchor.datetime, anchor.datetime, anchor.id);
+                }
+                query.append(ORDER_BACKWARDS, limit, offset);
+            } else {
+                if (anchor != null) {
+                    query.where(AFTER_KEY, anchor.datetime, anchor.datetime, anchor.id);
+                }
+                query.append(ORDER_FORWARD, limit, offset);
+            }
+
+            /* Perform query and store retrieved data */
+            SQLiteStatement st = query.prepare(db, SELECT_LOG_EVENTS);
+            try {
+                /* While there is data */
+                while (st.step()) {
+                    Map<String, String> logLine = new HashMap<String, String>();
+                    logLine.put("date", st.columnString(0));
+                    logLine.put("level", st.columnString(1));
+                    logLine.put("event", st.columnString(2));
+                    logLine.put("text", st.columnString(3));
+                    page.logLines.add(logLine);
+                    page.keys.add(new RowKey(st.columnString(0), st.columnLong(4)));
+                }
+            } finally {
+                st.dispose();
+            }
+
+            if (backwards) {
+                Collections.reverse(page.logLines);
+                Collections.reverse(page.keys);
+            }
+            return page;
+        }
+    }
 }
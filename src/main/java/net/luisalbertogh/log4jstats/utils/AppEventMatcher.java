@@ -0,0 +1,276 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This class implements a case-insensitive multi-pattern matcher for the application events (Aho-Corasick automaton).
+ * It is compiled once from the list of events, with their names and the values to look for in the log files, and it
+ * classifies a log line in a single pass over its chars, without copying or lowercasing the line. The event id
+ * returned is the position of the event in the list, and when several values are found the first event of the list
+ * wins, as when the values are searched one by one.
+ *
+ * @author lagarcia
+ */
+public final class AppEventMatcher {
+
+    /** Event id returned when no event is found */
+    public static final int NONE = -1;
+
+    /** Marks a state without output */
+    private static final int NO_OUTPUT = Integer.MAX_VALUE;
+
+    /** Event names and values */
+    private final String[] names;
+    private final String[] values;
+
+    /** Alphabet columns for ASCII chars */
+    private final int[] asciiColumns = new int[128];
+
+    /** Sorted non ASCII chars and their alphabet columns */
+    private final char[] otherChars;
+    private final int[] otherColumns;
+
+    /** Number of alphabet columns. Column 0 stands for any char not found in the values */
+    private final int columns;
+
+    /** Transitions table, indexed by state * columns + column */
+    private final int[] transitions;
+
+    /** Lowest event id found when reaching each state */
+    private final int[] outputs;
+
+    /**
+     * Constructor
+     *
+     * @param appEvents - Event names and values, in priority order
+     */
+    private AppEventMatcher(Map<String, String> appEvents) {
+        int size = appEvents.size();
+        this.names = new String[size];
+        this.values = new String[size];
+        int id = 0;
+        for (Map.Entry<String, String> appEvent : appEvents.entrySet()) {
+            names[id] = appEvent.getKey();
+            values[id] = appEvent.getValue();
+            id++;
+        }
+
+        /** Alphabet of the lowercase values */
+        TreeSet<Character> alphabet = new TreeSet<Character>();
+        for (String value : values) {
+            for (int i = 0; i < value.length(); i++) {
+                alphabet.add(Character.valueOf(fold(value.charAt(i))));
+            }
+        }
+        List<Character> others = new ArrayList<Character>();
+        int column = 1;
+        for (Character c : alphabet) {
+            if (c.charValue() < 128) {
+                asciiColumns[c.charValue()] = column++;
+            } else {
+                others.add(c);
+            }
+        }
+        this.otherChars = new char[others.size()];
+        this.otherColumns = new int[others.size()];
+        for (int i = 0; i < others.size(); i++) {
+            otherChars[i] = others.get(i).charValue();
+            otherColumns[i] = column++;
+        }
+        this.columns = column;
+
+        /** Trie of the values */
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Integer> trieOutputs = new ArrayList<Integer>();
+        trie.add(newState());
+        trieOutputs.add(Integer.valueOf(NO_OUTPUT));
+        for (id = 0; id < size; id++) {
+            int state = 0;
+            String value = values[id];
+            for (int i = 0; i < value.length(); i++) {
+                int col = columnOf(fold(value.charAt(i)));
+                int next = trie.get(state)[col];
+                if (next == -1) {
+                    next = trie.size();
+                    trie.add(newState());
+                    trieOutputs.add(Integer.valueOf(NO_OUTPUT));
+                    trie.get(state)[col] = next;
+                }
+                state = next;
+            }
+            if (id < trieOutputs.get(state).intValue()) {
+                trieOutputs.set(state, Integer.valueOf(id));
+            }
+        }
+
+        /** Breadth-first completion of the transitions with the failure links */
+        int nStates = trie.size();
+        this.transitions = new int[nStates * columns];
+        this.outputs = new int[nStates];
+        int[] failure = new int[nStates];
+        for (int s = 0; s < nStates; s++) {
+            outputs[s] = trieOutputs.get(s).intValue();
+        }
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int col = 0; col < columns; col++) {
+            int next = trie.get(0)[col];
+            if (next == -1) {
+                transitions[col] = 0;
+            } else {
+                transitions[col] = next;
+                failure[next] = 0;
+                queue.add(Integer.valueOf(next));
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.removeFirst().intValue();
+            outputs[state] = Math.min(outputs[state], outputs[failure[state]]);
+            for (int col = 0; col < columns; col++) {
+                int next = trie.get(state)[col];
+                if (next == -1) {
+                    transitions[state * columns + col] = transitions[failure[state] * columns + col];
+                } else {
+                    transitions[state * columns + col] = next;
+                    failure[next] = transitions[failure[state] * columns + col];
+                    queue.add(Integer.valueOf(next));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile a new matcher for the given application events.
+     *
+     * @param appEvents - Event names and values, in priority order
+     * @return The matcher
+     */
+    public static AppEventMatcher compile(Map<String, String> appEvents) {
+        return new AppEventMatcher(appEvents);
+    }
+
+    /**
+     * New trie state without transitions.
+     *
+     * @return
+     */
+    private int[] newState() {
+        int[] state = new int[columns];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * Lowercase a char.
+     *
+     * @param c
+     * @return
+     */
+    private static char fold(char c) {
+        if (c < 128) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Get the alphabet column of a lowercase char.
+     *
+     * @param c
+     * @return
+     */
+    private int columnOf(char c) {
+        if (c < 128) {
+            return asciiColumns[c];
+        }
+        int i = Arrays.binarySearch(otherChars, c);
+
+        return i >= 0 ? otherColumns[i] : 0;
+    }
+
+    /**
+     * Get the application event within the given log line.
+     *
+     * @param line
+     * @return Event id or NONE
+     */
+    public int match(CharSequence line) {
+        return match(line, 0, line.length());
+    }
+
+    /**
+     * Get the application event within the given region of the log line.
+     *
+     * @param line
+     * @param from
+     * @param to
+     * @return Event id or NONE
+     */
+    public int match(CharSequence line, int from, int to) {
+        int best = outputs[0];
+        int state = 0;
+        for (int i = from; i < to && best != 0; i++) {
+            state = transitions[state * columns + columnOf(fold(line.charAt(i)))];
+            if (outputs[state] < best) {
+                best = outputs[state];
+            }
+        }
+
+        return best == NO_OUTPUT ? NONE : best;
+    }
+
+    /**
+     * Does the given log line contain any of the application events?
+     *
+     * @param line
+     * @return
+     */
+    public boolean contains(CharSequence line) {
+        if (outputs[0] != NO_OUTPUT) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < line.length(); i++) {
+            state = transitions[state * columns + columnOf(fold(line.charAt(i)))];
+            if (outputs[state] != NO_OUTPUT) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the name of an application event.
+     *
+     * @param id
+     * @return
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Get the value of an application event.
+     *
+     * @param id
+     * @return
+     */
+    public String getValue(int id) {
+        return values[id];
+    }
+
+    /**
+     * Get the number of application events.
+     *
+     * @return
+     */
+    public int size() {
+        return names.length;
+    }
+}
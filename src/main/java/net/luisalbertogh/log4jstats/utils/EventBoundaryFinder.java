@@ -0,0 +1,145 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered search of the log events boundaries within a log file. A log event starts at a line beginning with a
+ * timestamp; the following lines without timestamp (a stack trace, for instance) belong to the same event.
+ *
+ * @author lagarcia
+ */
+final class EventBoundaryFinder {
+
+    /** Buffer size */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Maximum number of chars read to check the timestamp of a line */
+    private static final int MAX_TIMESTAMP_LENGTH = 256;
+
+    private final FileChannel channel;
+    private final long length;
+    private final TimestampParser parser;
+
+    /** Buffered bytes and their file position */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bufferStart = -1;
+
+    /** Chars of the line being checked */
+    private final char[] lineChars = new char[MAX_TIMESTAMP_LENGTH];
+
+    /**
+     * Constructor
+     *
+     * @param channelArg
+     * @param lengthArg - File length
+     * @param parserArg
+     */
+    EventBoundaryFinder(FileChannel channelArg, long lengthArg, TimestampParser parserArg) {
+        this.channel = channelArg;
+        this.length = lengthArg;
+        this.parser = parserArg;
+    }
+
+    /**
+     * Find the first log event starting after the line that contains the given position.
+     *
+     * @param from
+     * @param limit - Position where the search stops
+     * @return Position of the event, or -1 if there is no event before the limit
+     * @throws IOException
+     */
+    long findEventStart(long from, long limit) throws IOException {
+        long end = Math.min(limit, length);
+        long pos = from;
+        while (pos < end) {
+            /** Next line start */
+            int b = byteAt(pos);
+            while (b != '\n' && b != '\r') {
+                if (++pos >= end) {
+                    return -1;
+                }
+                b = byteAt(pos);
+            }
+            pos++;
+            if (b == '\r' && pos < end && byteAt(pos) == '\n') {
+                pos++;
+            }
+            if (pos >= end) {
+                return -1;
+            }
+
+            if (timestampAt(pos) != TimestampParser.INVALID) {
+                return pos;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find the first log event starting at or after the given position.
+     *
+     * @param pos
+     * @param limit - Position where the search stops
+     * @return Position of the event, or -1 if there is no event before the limit
+     * @throws IOException
+     */
+    long findEventAtOrAfter(long pos, long limit) throws IOException {
+        if (pos >= Math.min(limit, length)) {
+            return -1;
+        }
+        if (pos == 0) {
+            return timestampAt(0) != TimestampParser.INVALID ? 0 : findEventStart(0, limit);
+        }
+
+        /** Start from the previous byte, so a line starting right at the position is found */
+        return findEventStart(pos - 1, limit);
+    }
+
+    /**
+     * Parse the timestamp of the line starting at the given position.
+     *
+     * @param lineStart
+     * @return Epoch millis, or INVALID if the line does not start with a timestamp
+     * @throws IOException
+     */
+    long timestampAt(long lineStart) throws IOException {
+        int n = 0;
+        for (long p = lineStart; p < length && n < lineChars.length; p++) {
+            int b = byteAt(p);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            lineChars[n++] = (char) b;
+        }
+
+        return parser.parse(new String(lineChars, 0, n));
+    }
+
+    /**
+     * Get the byte at the given position.
+     *
+     * @param pos
+     * @return
+     * @throws IOException
+     */
+    private int byteAt(long pos) throws IOException {
+        if (bufferStart == -1 || pos < bufferStart || pos >= bufferStart + buffer.limit()) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, pos + buffer.position()) <= 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            bufferStart = pos;
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        return buffer.get((int) (pos - bufferStart)) & 0xff;
+    }
+}
@@ -0,0 +1,78 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.File;
+
+/**
+ * A range of bytes of a log file, starting at the beginning of a log event.
+ * 
+ * @author lagarcia
+ */
+public final class FileRange {
+
+    /** Log file */
+    private final File file;
+
+    /** First byte of the range */
+    private final long start;
+
+    /** End of the range (exclusive), or -1 for the end of the file */
+    private final long end;
+
+    /**
+     * Constructor
+     * 
+     * @param fileArg
+     * @param startArg
+     * @param endArg
+     */
+    public FileRange(File fileArg, long startArg, long endArg) {
+        this.file = fileArg;
+        this.start = startArg;
+        this.end = endArg;
+    }
+
+    /**
+     * Range with the whole file.
+     * 
+     * @param file
+     * @return
+     */
+    public static FileRange wholeFile(File file) {
+        return new FileRange(file, 0, -1);
+    }
+
+    /**
+     * Return file attribute.
+     * 
+     * @return file - Attribute returned
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Return start attribute.
+     * 
+     * @return start - Attribute returned
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Return end attribute.
+     * 
+     * @return end - Attribute returned
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return file.getName() + "[" + start + "," + (end != -1 ? String.valueOf(end) : "EOF") + ")";
+    }
+}
@@ -0,0 +1,27 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Forward iterator over the lines of a log file.
+ * 
+ * @author lagarcia
+ */
+public interface LineSource extends Closeable {
+
+    /**
+     * Move to the next line.
+     * 
+     * @return False if there are no more lines
+     * @throws IOException
+     */
+    boolean nextLine() throws IOException;
+
+    /**
+     * Get the current line, without the end of line chars. The line is only valid until the next call to nextLine.
+     * 
+     * @return
+     */
+    CharSequence getLine();
+}
@@ -0,0 +1,80 @@
+package net.luisalbertogh.log4jstats.utils;
+
+/**
+ * A log event read from the log files: its timestamp, level and log line.
+ * 
+ * @author lagarcia
+ */
+public final class LogEvent {
+
+    /** Timestamp as written in the log line */
+    private final String datetime;
+
+    /** Timestamp in epoch millis */
+    private final long time;
+
+    /** Log level */
+    private final String level;
+
+    /** Log line */
+    private final String text;
+
+    /**
+     * Constructor
+     * 
+     * @param datetimeArg
+     * @param timeArg
+     * @param levelArg
+     * @param textArg
+     */
+    public LogEvent(String datetimeArg, long timeArg, String levelArg, String textArg) {
+        this.datetime = datetimeArg;
+        this.time = timeArg;
+        this.level = levelArg;
+        this.text = textArg;
+    }
+
+    /**
+     * Return datetime attribute.
+     * 
+     * @return datetime - Attribute returned
+     */
+    public String getDatetime() {
+        return datetime;
+    }
+
+    /**
+     * Return time attribute.
+     * 
+     * @return time - Attribute returned
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Return level attribute.
+     * 
+     * @return level - Attribute returned
+     */
+    public String getLevel() {
+        return level;
+    }
+
+    /**
+     * Return text attribute.
+     * 
+     * @return text - Attribute returned
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,153 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the metadata of the files of a logs directory. The time span of a file rolled by a DailyRollingFileAppender
+ * is taken from its date suffix, without opening it; otherwise the first and last log events of the file are read.
+ * The metadata is kept until the size or the modification time of the file changes, so the rotated files are only
+ * read once.
+ *
+ * @author lagarcia
+ */
+public final class LogFileIndex {
+
+    /** DailyRollingFileAppender date patterns and their rolling periods */
+    private static final String[] ROLLING_PATTERNS = {"yyyy-MM-dd-HH-mm", "yyyy-MM-dd-HH", "yyyy-MM-dd", "yyyy-MM" };
+    private static final int[] ROLLING_PERIODS = {Calendar.MINUTE, Calendar.HOUR_OF_DAY, Calendar.DAY_OF_MONTH,
+            Calendar.MONTH };
+
+    /** Log files in date descending order */
+    private static final Comparator<LogFileInfo> LAST_MODIFIED_DESC = new Comparator<LogFileInfo>() {
+        @Override
+        public int compare(LogFileInfo o1, LogFileInfo o2) {
+            return Long.compare(o2.getLastModified(), o1.getLastModified());
+        }
+    };
+
+    /** Metadata per file path */
+    private final Map<String, LogFileInfo> cache = new HashMap<String, LogFileInfo>();
+
+    /** Date pattern of the cached time spans */
+    private String datePattern;
+
+    /**
+     * Get the metadata of the files of the given directory, sorted in date descending order.
+     *
+     * @param dir
+     * @param parser - Timestamp parser of the log lines
+     * @return Files metadata, or null if the directory does not exist
+     * @throws IOException
+     */
+    public synchronized List<LogFileInfo> list(File dir, TimestampParser parser) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return null;
+        }
+
+        /** Time spans depend on the date pattern */
+        if (!parser.getDatePattern().equals(datePattern)) {
+            cache.clear();
+            datePattern = parser.getDatePattern();
+        }
+
+        List<LogFileInfo> infos = new ArrayList<LogFileInfo>(files.length);
+        Map<String, LogFileInfo> current = new HashMap<String, LogFileInfo>();
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+
+            String path = file.getPath();
+            long length = file.length();
+            long lastModified = file.lastModified();
+            LogFileInfo info = cache.get(path);
+            if (info == null || !info.isCurrent(length, lastModified)) {
+                info = readInfo(file, length, lastModified, parser);
+            }
+            current.put(path, info);
+            infos.add(info);
+        }
+
+        /** Forget the deleted files */
+        cache.clear();
+        cache.putAll(current);
+
+        Collections.sort(infos, LAST_MODIFIED_DESC);
+        return infos;
+    }
+
+    /**
+     * Take the metadata of a file.
+     *
+     * @param file
+     * @param length
+     * @param lastModified
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    private static LogFileInfo readInfo(File file, long length, long lastModified, TimestampParser parser)
+            throws IOException {
+        /** Rolled file */
+        long[] period = getRollingPeriod(file.getName(), lastModified);
+        if (period != null) {
+            return new LogFileInfo(file, length, lastModified, period[0], period[1] - 1);
+        }
+
+        LogFileSeeker seeker = new LogFileSeeker(file, parser);
+        try {
+            return new LogFileInfo(file, length, lastModified, seeker.getFirstTime(), seeker.getLastTime());
+        } finally {
+            seeker.close();
+        }
+    }
+
+    /**
+     * Get the rolling period of a file from its DailyRollingFileAppender date suffix. The file must have been written
+     * after the period started, otherwise the suffix is not taken as a date.
+     *
+     * @param fileName
+     * @param lastModified
+     * @return Start and end (exclusive) of the period, or null if the file name has no date suffix
+     */
+    static long[] getRollingPeriod(String fileName, long lastModified) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot == -1) {
+            return null;
+        }
+
+        String suffix = fileName.substring(dot + 1);
+        for (int i = 0; i < ROLLING_PATTERNS.length; i++) {
+            if (suffix.length() != ROLLING_PATTERNS[i].length()) {
+                continue;
+            }
+
+            SimpleDateFormat format = new SimpleDateFormat(ROLLING_PATTERNS[i]);
+            format.setLenient(false);
+            ParsePosition position = new ParsePosition(0);
+            Date start = format.parse(suffix, position);
+            if (start == null || position.getIndex() != suffix.length() || start.getTime() > lastModified) {
+                continue;
+            }
+
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(start);
+            cal.add(ROLLING_PERIODS[i], 1);
+            return new long[] {start.getTime(), cal.getTimeInMillis() };
+        }
+
+        return null;
+    }
+}
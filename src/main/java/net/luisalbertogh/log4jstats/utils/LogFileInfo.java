@@ -0,0 +1,120 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.File;
+
+/**
+ * Metadata of a log file: its size, modification time and the time span of its log events. The time span is used to
+ * skip the files out of the requested dates without opening them, and it is valid while the size and modification time
+ * of the file do not change.
+ *
+ * @author lagarcia
+ */
+public final class LogFileInfo {
+
+    /** Log file */
+    private final File file;
+
+    /** File size and modification time when the metadata was taken */
+    private final long length;
+    private final long lastModified;
+
+    /** Time of the first and last log events, or INVALID if unknown */
+    private final long firstTime;
+    private final long lastTime;
+
+    /**
+     * Constructor
+     *
+     * @param fileArg
+     * @param lengthArg
+     * @param lastModifiedArg
+     * @param firstTimeArg
+     * @param lastTimeArg
+     */
+    public LogFileInfo(File fileArg, long lengthArg, long lastModifiedArg, long firstTimeArg, long lastTimeArg) {
+        this.file = fileArg;
+        this.length = lengthArg;
+        this.lastModified = lastModifiedArg;
+        this.firstTime = firstTimeArg;
+        this.lastTime = lastTimeArg;
+    }
+
+    /**
+     * Is the metadata taken from the current version of the file?
+     *
+     * @param fileLength
+     * @param fileLastModified
+     * @return
+     */
+    public boolean isCurrent(long fileLength, long fileLastModified) {
+        return length == fileLength && lastModified == fileLastModified;
+    }
+
+    /**
+     * May the file have log events within the given dates? Files with an unknown time span always may.
+     *
+     * @param initTime
+     * @param endTime
+     * @return
+     */
+    public boolean overlaps(long initTime, long endTime) {
+        if (lastTime != TimestampParser.INVALID && lastTime < initTime) {
+            return false;
+        }
+
+        return firstTime == TimestampParser.INVALID || firstTime <= endTime;
+    }
+
+    /**
+     * Return file attribute.
+     *
+     * @return file - Attribute returned
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Return length attribute.
+     *
+     * @return length - Attribute returned
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Return lastModified attribute.
+     *
+     * @return lastModified - Attribute returned
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Return firstTime attribute.
+     *
+     * @return firstTime - Attribute returned
+     */
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * Return lastTime attribute.
+     *
+     * @return lastTime - Attribute returned
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return file.getName() + "[" + firstTime + "," + lastTime + "]";
+    }
+}
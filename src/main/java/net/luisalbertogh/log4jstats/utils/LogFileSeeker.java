@@ -0,0 +1,245 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * This class finds the position of a given time within a log file. Log4j writes the events in time order, so the
+ * position is found with a binary search over the byte offsets: each probe moves to the next log event, parses its
+ * timestamp and halves the search interval. Only the last few kilobytes are read sequentially, so finding a time in a
+ * file of several gigabytes costs a few dozen reads.
+ *
+ * @author lagarcia
+ */
+public final class LogFileSeeker implements Closeable {
+
+    /** Below this interval size the search goes on sequentially */
+    private static final long LINEAR_SEARCH_SIZE = 16 * 1024;
+
+    /** Log files encoding */
+    private static final Charset ENCODING = Charset.forName("ISO-8859-1");
+
+    /** File */
+    private final RandomAccessFile raf;
+    private final long length;
+
+    /** Event boundaries finder */
+    private final EventBoundaryFinder finder;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     * @param parser - Timestamp parser of the log lines
+     * @throws IOException
+     */
+    public LogFileSeeker(File file, TimestampParser parser) throws IOException {
+        this.raf = new RandomAccessFile(file, "r");
+        this.length = raf.length();
+        this.finder = new EventBoundaryFinder(raf.getChannel(), length, parser);
+    }
+
+    /**
+     * Get the timestamp of the first log event of the file.
+     *
+     * @return Epoch millis, or INVALID if the file has no log events
+     * @throws IOException
+     */
+    public long getFirstTime() throws IOException {
+        long pos = finder.findEventAtOrAfter(0, length);
+        if (pos == -1) {
+            return TimestampParser.INVALID;
+        }
+
+        return finder.timestampAt(pos);
+    }
+
+    /**
+     * Get the timestamp of the last log event of the file. The end of the file is read in growing windows until a log
+     * event is found.
+     *
+     * @return Epoch millis, or INVALID if the file has no log events
+     * @throws IOException
+     */
+    public long getLastTime() throws IOException {
+        long window = LINEAR_SEARCH_SIZE;
+        while (true) {
+            long from = Math.max(0, length - window);
+            long last = -1;
+            for (long pos = finder.findEventAtOrAfter(from, length); pos != -1; pos = finder.findEventStart(pos,
+                    length)) {
+                last = pos;
+            }
+            if (last != -1) {
+                return finder.timestampAt(last);
+            }
+            if (from == 0) {
+                return TimestampParser.INVALID;
+            }
+            window *= 4;
+        }
+    }
+
+    /**
+     * Get the first line of the file, which identifies the file even after it is renamed by a rolling appender.
+     *
+     * @param maxLength - Maximum number of chars returned
+     * @return The line, its first chars if it is longer than the maximum, or null if it is not complete yet
+     * @throws IOException
+     */
+    public String getFirstLine(int maxLength) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(maxLength, length));
+        while (bytes.hasRemaining() && raf.getChannel().read(bytes, bytes.position()) > 0) {
+            continue;
+        }
+
+        int n = bytes.position();
+        for (int i = 0; i < n; i++) {
+            byte b = bytes.get(i);
+            if (b == '\n' || b == '\r') {
+                return new String(bytes.array(), 0, i, ENCODING);
+            }
+        }
+
+        return n == maxLength ? new String(bytes.array(), 0, n, ENCODING) : null;
+    }
+
+    /**
+     * Get the length of the complete lines of the file. A log file being written may end with a line not complete
+     * yet.
+     *
+     * @return Position after the last end of line, or 0 if there is none
+     * @throws IOException
+     */
+    public long getCompleteLength() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(LINEAR_SEARCH_SIZE, Math.max(1, length)));
+        long end = length;
+        while (end > 0) {
+            long start = Math.max(0, end - bytes.capacity());
+            bytes.clear();
+            bytes.limit((int) (end - start));
+            while (bytes.hasRemaining() && raf.getChannel().read(bytes, start + bytes.position()) > 0) {
+                continue;
+            }
+            for (int i = bytes.position() - 1; i >= 0; i--) {
+                byte b = bytes.get(i);
+                if (b == '\n' || b == '\r') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Find the first log event not older than the given time.
+     *
+     * @param time - Epoch millis
+     * @return Position of the event, or the file length if all the events are older
+     * @throws IOException
+     */
+    public long seek(long time) throws IOException {
+        return search(time, false);
+    }
+
+    /**
+     * Find the first log event newer than the given time.
+     *
+     * @param time - Epoch millis
+     * @return Position of the event, or the file length if no event is newer
+     * @throws IOException
+     */
+    public long seekAfter(long time) throws IOException {
+        return search(time, true);
+    }
+
+    /**
+     * Is there a log event of the given time before a position? A file rewritten after it was read usually has no
+     * event of the last time read there.
+     *
+     * @param time - Epoch millis
+     * @param end - Position
+     * @return
+     * @throws IOException
+     */
+    public boolean hasEvent(long time, long end) throws IOException {
+        long pos = seek(time);
+        return pos < end && finder.timestampAt(pos) == time;
+    }
+
+    /**
+     * Binary search of the first log event at or after (or strictly after) the given time.
+     *
+     * @param time
+     * @param strict
+     * @return
+     * @throws IOException
+     */
+    private long search(long time, boolean strict) throws IOException {
+        /** First known event of the wanted time. No event between hi and best is older */
+        long best = length;
+        long lo = 0;
+        long hi = length;
+        while (hi - lo > LINEAR_SEARCH_SIZE) {
+            long mid = lo + (hi - lo) / 2;
+            long pos = finder.findEventAtOrAfter(mid, hi);
+            if (pos == -1) {
+                hi = mid;
+                continue;
+            }
+            if (isWanted(finder.timestampAt(pos), time, strict)) {
+                best = pos;
+                hi = pos;
+            } else {
+                lo = pos + 1;
+            }
+        }
+
+        /** Sequential search in the last interval */
+        long pos = finder.findEventAtOrAfter(lo, hi);
+        while (pos != -1) {
+            if (isWanted(finder.timestampAt(pos), time, strict)) {
+                return pos;
+            }
+            pos = finder.findEventStart(pos, hi);
+        }
+
+        return best;
+    }
+
+    /**
+     * Is the given event time at or after (or strictly after) the searched time?
+     *
+     * @param eventTime
+     * @param time
+     * @param strict
+     * @return
+     */
+    private static boolean isWanted(long eventTime, long time, boolean strict) {
+        return strict ? eventTime > time : eventTime >= time;
+    }
+
+    /**
+     * Return the file length when the seeker was opened.
+     *
+     * @return
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        raf.close();
+    }
+}
@@ -0,0 +1,80 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class cuts a big log file into byte ranges that can be scanned by different workers. Each range starts at a
+ * line beginning with a timestamp, so a multi-line log event (a stack trace, for instance) is never split between two
+ * ranges. Scanning the ranges in order gives the same lines than scanning the whole file.
+ *
+ * @author lagarcia
+ */
+public final class LogFileSplitter {
+
+    /**
+     * Private constructor
+     */
+    private LogFileSplitter() {
+    }
+
+    /**
+     * Cut the given log file into ranges of about the given size. Files not bigger than the range size are returned
+     * as a single range.
+     *
+     * @param file
+     * @param rangeSize - Approximate size of the ranges, in bytes
+     * @param parser - Timestamp parser of the log lines
+     * @return Ranges in file order. The last one goes until the end of the file
+     * @throws IOException
+     */
+    public static List<FileRange> split(File file, long rangeSize, TimestampParser parser) throws IOException {
+        return split(file, 0, -1, rangeSize, parser);
+    }
+
+    /**
+     * Cut a range of the given log file into ranges of about the given size.
+     *
+     * @param file
+     * @param start - Start of the range to cut, at the beginning of a log event
+     * @param end - End of the range to cut (exclusive), or -1 for the end of the file
+     * @param rangeSize - Approximate size of the ranges, in bytes
+     * @param parser - Timestamp parser of the log lines
+     * @return Ranges in file order. The last one ends at the given end
+     * @throws IOException
+     */
+    public static List<FileRange> split(File file, long start, long end, long rangeSize, TimestampParser parser)
+            throws IOException {
+        List<FileRange> ranges = new ArrayList<FileRange>();
+        long length = end != -1 ? end : file.length();
+        if (rangeSize <= 0 || length - start <= rangeSize) {
+            ranges.add(new FileRange(file, start, end));
+            return ranges;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            EventBoundaryFinder finder = new EventBoundaryFinder(raf.getChannel(), raf.length(), parser);
+            long rangeStart = start;
+            for (long target = start + rangeSize; target < length; target += rangeSize) {
+                if (target <= rangeStart) {
+                    continue;
+                }
+                long boundary = finder.findEventStart(target, length);
+                if (boundary == -1) {
+                    break;
+                }
+                ranges.add(new FileRange(file, rangeStart, boundary));
+                rangeStart = boundary;
+            }
+            ranges.add(new FileRange(file, rangeStart, end));
+        } finally {
+            raf.close();
+        }
+
+        return ranges;
+    }
+}
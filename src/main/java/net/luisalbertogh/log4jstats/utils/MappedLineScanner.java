@@ -0,0 +1,306 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * This class scans the lines of a log file mapped in memory. The file is mapped in windows, so big files do not need
+ * a single huge mapping, and the lines are split on the raw bytes. The current line is exposed as a char sequence
+ * over the mapped bytes (one char per byte, as ISO-8859-1), so the level, date and event checks can run on it and
+ * only the lines that are kept need to be decoded. Lines end at \n, \r or \r\n, as with a buffered reader.
+ *
+ * @author lagarcia
+ */
+public final class MappedLineScanner implements LineSource {
+
+    /** Default window size */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** File and channel */
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    /** End of the scanned range, or file size when the scanner was opened */
+    private final long fileSize;
+    /** Window size */
+    private final int windowSize;
+
+    /** Current window */
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+
+    /** File position of the next line */
+    private long position;
+    /** Skip a \n at the next position, after a \r at the end of the previous window */
+    private boolean skipLF;
+
+    /** Current line */
+    private final ByteLine line = new ByteLine();
+    private long linePosition = -1;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     * @throws IOException
+     */
+    public MappedLineScanner(File file) throws IOException {
+        this(file, WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param file
+     * @param windowSize - Size of the mapped windows
+     * @throws IOException
+     */
+    public MappedLineScanner(File file, int windowSize) throws IOException {
+        this(file, 0, -1, windowSize);
+    }
+
+    /**
+     * Constructor for a range of the file. The range must start at the beginning of a line.
+     *
+     * @param file
+     * @param start - Position of the first line
+     * @param end - End of the range (exclusive), or -1 to scan until the end of the file
+     * @param windowSize - Size of the mapped windows
+     * @throws IOException
+     */
+    public MappedLineScanner(File file, long start, long end, int windowSize) throws IOException {
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        this.fileSize = end != -1 ? Math.min(end, channel.size()) : channel.size();
+        this.windowSize = windowSize;
+        this.position = start;
+    }
+
+    /**
+     * Constructor for a range of the file.
+     *
+     * @param range
+     * @throws IOException
+     */
+    public MappedLineScanner(FileRange range) throws IOException {
+        this(range.getFile(), range.getStart(), range.getEnd(), WINDOW_SIZE);
+    }
+
+    /**
+     * @see LineSource#nextLine()
+     */
+    public boolean nextLine() throws IOException {
+        skipPendingLF();
+        if (position >= fileSize) {
+            return false;
+        }
+
+        ensureWindow(position);
+        int start = (int) (position - windowStart);
+        int i = start;
+        while (true) {
+            /** Look for the end of line within the window */
+            for (; i < windowLimit; i++) {
+                byte b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    line.set(window, start, i - start);
+                    linePosition = windowStart + start;
+                    int next = i + 1;
+                    if (b == '\r') {
+                        if (next < windowLimit) {
+                            if (window.get(next) == '\n') {
+                                next++;
+                            }
+                        } else {
+                            skipLF = true;
+                        }
+                    }
+                    position = windowStart + next;
+                    return true;
+                }
+            }
+
+            /** Last line without end of line */
+            if (windowStart + windowLimit >= fileSize) {
+                line.set(window, start, windowLimit - start);
+                linePosition = windowStart + start;
+                position = fileSize;
+                return true;
+            }
+
+            /** The line goes on in the next window. Map again from the line start */
+            int scanned = i - start;
+            long size = scanned < windowSize / 2 ? windowSize : Math.min(2L * scanned, Integer.MAX_VALUE);
+            map(windowStart + start, size);
+            start = 0;
+            i = scanned;
+        }
+    }
+
+    /**
+     * @see LineSource#getLine()
+     */
+    public CharSequence getLine() {
+        return line;
+    }
+
+    /**
+     * Decode the current line with the given encoding.
+     *
+     * @param charset
+     * @return
+     */
+    public String getLine(Charset charset) {
+        return line.decode(charset);
+    }
+
+    /**
+     * Get the file position where the current line starts.
+     *
+     * @return
+     */
+    public long getLinePosition() {
+        return linePosition;
+    }
+
+    /**
+     * Get the file position where the next line starts, after the end of line chars of the current one.
+     *
+     * @return
+     * @throws IOException
+     */
+    public long getNextLinePosition() throws IOException {
+        skipPendingLF();
+        return position;
+    }
+
+    /**
+     * Skip the \n following a \r at the end of the previous window, if any.
+     *
+     * @throws IOException
+     */
+    private void skipPendingLF() throws IOException {
+        if (skipLF) {
+            skipLF = false;
+            if (position < fileSize) {
+                ensureWindow(position);
+                if (window.get((int) (position - windowStart)) == '\n') {
+                    position++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Map the window containing the given position, if it is not mapped yet.
+     *
+     * @param pos
+     * @throws IOException
+     */
+    private void ensureWindow(long pos) throws IOException {
+        if (window == null || pos < windowStart || pos >= windowStart + windowLimit) {
+            map(pos, windowSize);
+        }
+    }
+
+    /**
+     * Map a window of the file.
+     *
+     * @param start
+     * @param size
+     * @throws IOException
+     */
+    private void map(long start, long size) throws IOException {
+        int limit = (int) Math.min(size, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, limit);
+        windowStart = start;
+        windowLimit = limit;
+    }
+
+    /**
+     * Close the file. The mapped windows are released by the garbage collector.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        window = null;
+        raf.close();
+    }
+
+    /**
+     * A line of the mapped file, read as ISO-8859-1 chars.
+     *
+     * @author lagarcia
+     */
+    private static final class ByteLine implements CharSequence {
+        /** Mapped bytes */
+        private ByteBuffer buffer;
+        /** Line start and length within the buffer */
+        private int offset;
+        private int length;
+
+        /**
+         * Point to a new line.
+         *
+         * @param bufferArg
+         * @param offsetArg
+         * @param lengthArg
+         */
+        void set(ByteBuffer bufferArg, int offsetArg, int lengthArg) {
+            this.buffer = bufferArg;
+            this.offset = offsetArg;
+            this.length = lengthArg;
+        }
+
+        /**
+         * Decode the line.
+         *
+         * @param charset
+         * @return
+         */
+        String decode(Charset charset) {
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(offset + length);
+            bytes.position(offset);
+            return charset.decode(bytes).toString();
+        }
+
+        /**
+         * @see CharSequence#length()
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * @see CharSequence#charAt(int)
+         */
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xff);
+        }
+
+        /**
+         * @see CharSequence#subSequence(int, int)
+         */
+        public CharSequence subSequence(int start, int end) {
+            char[] chars = new char[end - start];
+            for (int i = start; i < end; i++) {
+                chars[i - start] = charAt(i);
+            }
+            return new String(chars);
+        }
+
+        /**
+         * @see Object#toString()
+         */
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class implements a log line tokenizer generated from the log4j conversion pattern of the appender. The fields
+ * are read by position, walking the literal text of the pattern, and only as far as the requested field, so reading
+ * the level or the logger of a line does not scan the whole line.
+ *
+ * @author lagarcia
+ */
+public final class PatternLayoutTokenizer {
+
+    /** Default date pattern of the log4j %d conversion character */
+    private static final String ISO8601_PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+
+    /** Conversion pattern */
+    private final String conversionPattern;
+
+    /** Pattern elements, either literal text or fields */
+    private final List<Element> elements = new ArrayList<Element>();
+
+    /** Timestamp parser for the %d field */
+    private TimestampParser dateParser;
+
+    /**
+     * Constructor
+     *
+     * @param conversionPattern
+     */
+    private PatternLayoutTokenizer(String conversionPattern) {
+        this.conversionPattern = conversionPattern;
+
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int length = conversionPattern.length();
+        while (i < length) {
+            char c = conversionPattern.charAt(i++);
+            if (c != '%' || i >= length) {
+                literal.append(c);
+                continue;
+            }
+            /** Escaped percent sign */
+            if (conversionPattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+
+            /** Format modifiers. Padding is removed on both sides, so the alignment is not needed */
+            int minWidth = 0;
+            if (conversionPattern.charAt(i) == '-') {
+                i++;
+            }
+            while (i < length && Character.isDigit(conversionPattern.charAt(i))) {
+                minWidth = minWidth * 10 + (conversionPattern.charAt(i++) - '0');
+            }
+            if (i < length && conversionPattern.charAt(i) == '.') {
+                i++;
+                while (i < length && Character.isDigit(conversionPattern.charAt(i))) {
+                    i++;
+                }
+            }
+            if (i >= length) {
+                break;
+            }
+
+            /** Conversion char and option */
+            char conversion = conversionPattern.charAt(i++);
+            String option = null;
+            if (i < length && conversionPattern.charAt(i) == '{') {
+                int close = conversionPattern.indexOf('}', i);
+                if (close != -1) {
+                    option = conversionPattern.substring(i + 1, close);
+                    i = close + 1;
+                }
+            }
+
+            /** End of line, nothing else to read */
+            if (conversion == 'n') {
+                break;
+            }
+
+            if (literal.length() != 0) {
+                elements.add(new Element(literal.toString()));
+                literal.setLength(0);
+            }
+            elements.add(new Element(conversion, minWidth));
+
+            if (conversion == 'd' && dateParser == null) {
+                dateParser = TimestampParser.compile(getDatePattern(option));
+            }
+        }
+        if (literal.length() != 0) {
+            elements.add(new Element(literal.toString()));
+        }
+    }
+
+    /**
+     * Generate a new tokenizer for the given log4j conversion pattern.
+     *
+     * @param conversionPattern - Conversion pattern, as returned by StatisticsUtils.getConversionPattern
+     * @return The tokenizer
+     */
+    public static PatternLayoutTokenizer compile(String conversionPattern) {
+        return new PatternLayoutTokenizer(conversionPattern);
+    }
+
+    /**
+     * Get the Java date pattern for the given %d option.
+     *
+     * @param option
+     * @return
+     */
+    private static String getDatePattern(String option) {
+        if (option == null || "ISO8601".equals(option)) {
+            return ISO8601_PATTERN;
+        } else if ("ABSOLUTE".equals(option)) {
+            return "HH:mm:ss,SSS";
+        } else if ("DATE".equals(option)) {
+            return "dd MMM yyyy HH:mm:ss,SSS";
+        }
+
+        return option;
+    }
+
+    /**
+     * Is the given field in the conversion pattern?
+     *
+     * @param conversion - Conversion char (d, p, c, t, m...)
+     * @return
+     */
+    public boolean hasField(char conversion) {
+        return indexOf(conversion) != -1;
+    }
+
+    /**
+     * Get the log level of the given line.
+     *
+     * @param line
+     * @return Log level or null if the line does not follow the conversion pattern
+     */
+    public LogLevels getLevel(CharSequence line) {
+        long bounds = locate(line, indexOf('p'));
+        if (bounds == -1) {
+            return null;
+        }
+        int start = (int) (bounds >>> 32);
+        int end = (int) bounds;
+        if (start >= end) {
+            return null;
+        }
+
+        LogLevels level;
+        switch (line.charAt(start)) {
+            case 'F':
+                level = LogLevels.FATAL;
+                break;
+            case 'E':
+                level = LogLevels.ERROR;
+                break;
+            case 'W':
+                level = LogLevels.WARN;
+                break;
+            case 'I':
+                level = LogLevels.INFO;
+                break;
+            case 'D':
+                level = LogLevels.DEBUG;
+                break;
+            case 'T':
+                level = LogLevels.TRACE;
+                break;
+            default:
+                return null;
+        }
+
+        /** Check the whole level name */
+        String name = level.getLevel();
+        if (end - start != name.length()) {
+            return null;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (line.charAt(start + i) != name.charAt(i)) {
+                return null;
+            }
+        }
+
+        return level;
+    }
+
+    /**
+     * Get the logger (category) name of the given line.
+     *
+     * @param line
+     * @return Logger name or null if the line does not follow the conversion pattern
+     */
+    public String getLogger(CharSequence line) {
+        return getField(line, 'c');
+    }
+
+    /**
+     * Get the thread name of the given line.
+     *
+     * @param line
+     * @return Thread name or null if the line does not follow the conversion pattern
+     */
+    public String getThread(CharSequence line) {
+        return getField(line, 't');
+    }
+
+    /**
+     * Get the position where the message of the given line starts.
+     *
+     * @param line
+     * @return Message start or -1 if the line does not follow the conversion pattern
+     */
+    public int getMessageStart(CharSequence line) {
+        long bounds = locate(line, indexOf('m'));
+        if (bounds == -1) {
+            return -1;
+        }
+
+        return (int) (bounds >>> 32);
+    }
+
+    /**
+     * Get the text of a field of the given line.
+     *
+     * @param line
+     * @param conversion
+     * @return Field text or null if the line does not follow the conversion pattern
+     */
+    public String getField(CharSequence line, char conversion) {
+        long bounds = locate(line, indexOf(conversion));
+        if (bounds == -1) {
+            return null;
+        }
+
+        return line.subSequence((int) (bounds >>> 32), (int) bounds).toString();
+    }
+
+    /**
+     * Get the element index of the given field.
+     *
+     * @param conversion
+     * @return
+     */
+    private int indexOf(char conversion) {
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i).conversion == conversion) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Walk the pattern elements until the given one and return its bounds within the line, without the padding.
+     *
+     * @param line
+     * @param target - Element index
+     * @return Start and end of the field packed in a long (start in the high bits), or -1
+     */
+    private long locate(CharSequence line, int target) {
+        if (target == -1) {
+            return -1;
+        }
+
+        int length = line.length();
+        /** Line break chars are not part of the line */
+        while (length > 0 && (line.charAt(length - 1) == '\n' || line.charAt(length - 1) == '\r')) {
+            length--;
+        }
+
+        int pos = 0;
+        for (int e = 0; e <= target; e++) {
+            Element element = elements.get(e);
+
+            /** Literal text must match */
+            if (element.literal != null) {
+                if (!regionMatches(line, length, pos, element.literal, 0)) {
+                    return -1;
+                }
+                pos += element.literal.length();
+                continue;
+            }
+
+            /** Field end */
+            int end;
+            Element next = e + 1 < elements.size() ? elements.get(e + 1) : null;
+            if (element.conversion == 'd') {
+                int width = dateParser.getLength();
+                if (width == -1) {
+                    String timestamp = dateParser.getTimestamp(line, pos);
+                    width = timestamp != null ? timestamp.length() : -1;
+                }
+                if (width == -1 || pos + width > length) {
+                    return -1;
+                }
+                end = pos + width;
+            } else if (next == null) {
+                end = length;
+            } else if (next.literal != null) {
+                /** Padding belongs to the field, so the next literal is not before the minimum width */
+                int from = Math.min(pos + element.minWidth, length);
+                end = element.conversion == 'm' ? lastIndexOf(line, length, next.literal, from) : indexOf(line,
+                        length, next.literal, from);
+                if (end == -1) {
+                    return -1;
+                }
+            } else if (element.minWidth > 0) {
+                end = pos + element.minWidth;
+                if (end > length) {
+                    return -1;
+                }
+            } else {
+                end = pos;
+                while (end < length && line.charAt(end) != ' ') {
+                    end++;
+                }
+            }
+
+            if (e == target) {
+                /** Remove padding */
+                int start = pos;
+                int valueEnd = end;
+                while (start < valueEnd && line.charAt(start) == ' ') {
+                    start++;
+                }
+                while (valueEnd > start && line.charAt(valueEnd - 1) == ' ') {
+                    valueEnd--;
+                }
+                return ((long) start << 32) | valueEnd;
+            }
+            pos = end;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Does the line contain the given text at the given position?
+     *
+     * @param line
+     * @param length
+     * @param pos
+     * @param text
+     * @param textStart
+     * @return
+     */
+    private static boolean regionMatches(CharSequence line, int length, int pos, String text, int textStart) {
+        if (pos + text.length() - textStart > length) {
+            return false;
+        }
+        for (int i = textStart; i < text.length(); i++) {
+            if (line.charAt(pos + i - textStart) != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Find the first occurrence of the text in the line.
+     *
+     * @param line
+     * @param length
+     * @param text
+     * @param from
+     * @return Position or -1
+     */
+    private static int indexOf(CharSequence line, int length, String text, int from) {
+        char first = text.charAt(0);
+        for (int i = from; i + text.length() <= length; i++) {
+            if (line.charAt(i) == first && regionMatches(line, length, i + 1, text, 1)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find the last occurrence of the text in the line.
+     *
+     * @param line
+     * @param length
+     * @param text
+     * @param from
+     * @return Position or -1
+     */
+    private static int lastIndexOf(CharSequence line, int length, String text, int from) {
+        char first = text.charAt(0);
+        for (int i = length - text.length(); i >= from; i--) {
+            if (line.charAt(i) == first && regionMatches(line, length, i + 1, text, 1)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Return conversionPattern attribute.
+     *
+     * @return conversionPattern - Attribute returned
+     */
+    public String getConversionPattern() {
+        return conversionPattern;
+    }
+
+    /**
+     * An element of the conversion pattern, either literal text or a field.
+     *
+     * @author lagarcia
+     */
+    private static final class Element {
+        /** Literal text */
+        private final String literal;
+        /** Conversion char */
+        private final char conversion;
+        /** Minimum width */
+        private final int minWidth;
+
+        /**
+         * Literal constructor
+         *
+         * @param literal
+         */
+        Element(String literal) {
+            this.literal = literal;
+            this.conversion = 0;
+            this.minWidth = 0;
+        }
+
+        /**
+         * Field constructor
+         *
+         * @param conversion
+         * @param minWidth
+         */
+        Element(char conversion, int minWidth) {
+            this.literal = null;
+            this.conversion = conversion;
+            this.minWidth = minWidth;
+        }
+    }
+}
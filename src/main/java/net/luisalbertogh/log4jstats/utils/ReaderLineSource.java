@@ -0,0 +1,146 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Line source that decodes every line of the file with a buffered reader, using the default encoding.
+ * 
+ * @author lagarcia
+ */
+public final class ReaderLineSource implements LineSource {
+
+    /** Reader */
+    private final BufferedReader reader;
+
+    /** Current line */
+    private String line;
+
+    /**
+     * Constructor
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public ReaderLineSource(File file) throws IOException {
+        this.reader = new BufferedReader(new FileReader(file));
+    }
+
+    /**
+     * Constructor for a range of the file. The range must start at the beginning of a line.
+     * 
+     * @param range
+     * @throws IOException
+     */
+    public ReaderLineSource(FileRange range) throws IOException {
+        FileInputStream in = new FileInputStream(range.getFile());
+        try {
+            in.getChannel().position(range.getStart());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        InputStream rangeIn = in;
+        if (range.getEnd() != -1) {
+            rangeIn = new RangeInputStream(in, range.getEnd() - range.getStart());
+        }
+        this.reader = new BufferedReader(new InputStreamReader(rangeIn));
+    }
+
+    /**
+     * @see LineSource#nextLine()
+     */
+    public boolean nextLine() throws IOException {
+        line = reader.readLine();
+        return line != null;
+    }
+
+    /**
+     * @see LineSource#getLine()
+     */
+    public CharSequence getLine() {
+        return line;
+    }
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Input stream limited to a number of bytes.
+     * 
+     * @author lagarcia
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+        /** Bytes left */
+        private long remaining;
+
+        /**
+         * Constructor
+         * 
+         * @param in
+         * @param length
+         */
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        /**
+         * @see FilterInputStream#read()
+         */
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        /**
+         * @see FilterInputStream#read(byte[], int, int)
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        /**
+         * @see FilterInputStream#skip(long)
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        /**
+         * @see FilterInputStream#available()
+         */
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
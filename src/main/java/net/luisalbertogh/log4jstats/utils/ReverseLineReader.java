@@ -0,0 +1,197 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * This class reads the lines of a log file from the last one to the first one. The file is read backwards in large
+ * blocks through its channel and the lines are split within the block, so the newest log events come first without
+ * reading the file byte by byte. Lines are decoded as ISO-8859-1, without the end of line chars, and empty lines are
+ * skipped.
+ *
+ * @author lagarcia
+ */
+public final class ReverseLineReader implements Closeable {
+
+    /** Default block size */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /** Log files encoding */
+    private static final Charset ENCODING = Charset.forName("ISO-8859-1");
+
+    /** File and channel */
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    /** Current block */
+    private final byte[] block;
+    private final ByteBuffer blockBuffer;
+    /** File position of the current block */
+    private long blockStart;
+    /** Block bytes not read yet, from 0 to blockPos */
+    private int blockPos;
+
+    /** Bytes of a line split between blocks, stored at the end of the array */
+    private byte[] carry = new byte[256];
+    private int carryStart = carry.length;
+
+    /** File position of the last line read */
+    private long linePosition = -1;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     * @throws IOException
+     */
+    public ReverseLineReader(File file) throws IOException {
+        this(file, -1, BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor to read the lines before the given position.
+     *
+     * @param file
+     * @param end - Position where the reading starts, at the beginning of a line, or -1 for the end of the file
+     * @throws IOException
+     */
+    public ReverseLineReader(File file, long end) throws IOException {
+        this(file, end, BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor to read the lines before the given position.
+     *
+     * @param file
+     * @param end - Position where the reading starts, at the beginning of a line, or -1 for the end of the file
+     * @param blockSize - Size of the blocks read from the file
+     * @throws IOException
+     */
+    public ReverseLineReader(File file, long end, int blockSize) throws IOException {
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        this.block = new byte[blockSize];
+        this.blockBuffer = ByteBuffer.wrap(block);
+        this.blockStart = end != -1 ? Math.min(end, channel.size()) : channel.size();
+        this.blockPos = 0;
+    }
+
+    /**
+     * Read the previous line of the file.
+     *
+     * @return The line, or null if the beginning of the file is reached
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            /** Look for the previous end of line within the block */
+            for (int i = blockPos - 1; i >= 0; i--) {
+                byte b = block[i];
+                if (b == '\n' || b == '\r') {
+                    int from = i + 1;
+                    int length = blockPos - from;
+                    blockPos = i;
+                    if (length == 0 && carryStart == carry.length) {
+                        continue;
+                    }
+                    return toLine(block, from, length, blockStart + from);
+                }
+            }
+
+            /** Beginning of the file */
+            if (blockStart == 0) {
+                int length = blockPos;
+                blockPos = 0;
+                if (length == 0 && carryStart == carry.length) {
+                    return null;
+                }
+                return toLine(block, 0, length, 0);
+            }
+
+            /** Keep the start of the current block and read the previous one */
+            prependCarry(block, 0, blockPos);
+            readPreviousBlock();
+        }
+    }
+
+    /**
+     * Get the file position where the last line read starts.
+     *
+     * @return
+     */
+    public long getLinePosition() {
+        return linePosition;
+    }
+
+    /**
+     * Read the block before the current one.
+     *
+     * @throws IOException
+     */
+    private void readPreviousBlock() throws IOException {
+        int size = (int) Math.min(block.length, blockStart);
+        blockStart -= size;
+        blockBuffer.clear();
+        blockBuffer.limit(size);
+        while (blockBuffer.hasRemaining()) {
+            if (channel.read(blockBuffer, blockStart + blockBuffer.position()) == -1) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        blockPos = size;
+    }
+
+    /**
+     * Add bytes in front of the carried line bytes.
+     *
+     * @param bytes
+     * @param from
+     * @param length
+     */
+    private void prependCarry(byte[] bytes, int from, int length) {
+        if (length > carryStart) {
+            int carryLength = carry.length - carryStart;
+            byte[] newCarry = new byte[Math.max(carry.length * 2, carryLength + length)];
+            System.arraycopy(carry, carryStart, newCarry, newCarry.length - carryLength, carryLength);
+            carryStart = newCarry.length - carryLength;
+            carry = newCarry;
+        }
+        carryStart -= length;
+        System.arraycopy(bytes, from, carry, carryStart, length);
+    }
+
+    /**
+     * Decode a line, joining the carried bytes if any.
+     *
+     * @param bytes
+     * @param from
+     * @param length
+     * @param position - File position of the line
+     * @return
+     */
+    private String toLine(byte[] bytes, int from, int length, long position) {
+        linePosition = position;
+        if (carryStart == carry.length) {
+            return new String(bytes, from, length, ENCODING);
+        }
+
+        prependCarry(bytes, from, length);
+        String line = new String(carry, carryStart, carry.length - carryStart, ENCODING);
+        carryStart = carry.length;
+        return line;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        raf.close();
+    }
+}
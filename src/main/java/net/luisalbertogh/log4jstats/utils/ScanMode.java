@@ -0,0 +1,17 @@
+package net.luisalbertogh.log4jstats.utils;
+
+/**
+ * Log files scanning modes.
+ * 
+ * @author lagarcia
+ */
+public enum ScanMode {
+    /**
+     * Decode every line with a buffered reader.
+     */
+    READER,
+    /**
+     * Map the file in memory and check the lines on the raw bytes.
+     */
+    MAPPED
+}
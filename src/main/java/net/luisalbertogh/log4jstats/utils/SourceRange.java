@@ -0,0 +1,66 @@
+package net.luisalbertogh.log4jstats.utils;
+
+/**
+ * A range of a log file whose lines have been handled, with the time of its last log event.
+ *
+ * @author lagarcia
+ */
+public final class SourceRange {
+
+    /** Position of the first line of the range */
+    private final long start;
+
+    /** Position after the last line of the range */
+    private final long end;
+
+    /** Epoch millis of the last log event of the range, or TimestampParser.INVALID if it is not known */
+    private final long lastTime;
+
+    /**
+     * Constructor
+     *
+     * @param startArg
+     * @param endArg
+     * @param lastTimeArg
+     */
+    public SourceRange(long startArg, long endArg, long lastTimeArg) {
+        this.start = startArg;
+        this.end = endArg;
+        this.lastTime = lastTimeArg;
+    }
+
+    /**
+     * Return start attribute.
+     *
+     * @return start - Attribute returned
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Return end attribute.
+     *
+     * @return end - Attribute returned
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Return lastTime attribute.
+     *
+     * @return lastTime - Attribute returned
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "[" + start + "," + end + ")";
+    }
+}
@@ -0,0 +1,507 @@
+package net.luisalbertogh.log4jstats.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class implements a parser for the timestamp written by the log4j %d conversion character at the beginning of
+ * each log line. It is compiled once from the Java date pattern and, for fixed-width patterns, it reads the digits
+ * straight from the line chars into epoch millis without creating any object. The date and second part of the last
+ * parsed timestamp is cached, so consecutive lines raised within the same second only read the milliseconds.
+ * Instances are thread-safe.
+ *
+ * @author lagarcia
+ */
+public final class TimestampParser {
+
+    /** Value returned when the line does not start with a valid timestamp */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /** Java date pattern */
+    private final String datePattern;
+
+    /** True if every field of the pattern has a fixed width */
+    private final boolean fixedWidth;
+
+    /** Pattern as a template of chars, where field positions hold the field letter */
+    private final char[] template;
+
+    /** Field positions within the template */
+    private final boolean[] fieldChars;
+
+    /** Field letters, start positions and widths */
+    private final char[] fieldLetters;
+    private final int[] fieldStarts;
+    private final int[] fieldWidths;
+
+    /** Length of the date part, this is, until the first blank space */
+    private final int dateLength;
+
+    /** Last parsed date and second */
+    private volatile CachedSecond cachedSecond;
+
+    /** Last returned date part */
+    private volatile String cachedDate;
+
+    /** Calendar used to resolve new dates and seconds */
+    private final ThreadLocal<Calendar> calendar = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+
+    /** Date formatter for the patterns without fixed width */
+    private final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(datePattern);
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param datePattern
+     */
+    private TimestampParser(String datePattern) {
+        this.datePattern = datePattern;
+
+        StringBuilder sb = new StringBuilder();
+        List<int[]> fields = new ArrayList<int[]>();
+        boolean fixed = true;
+        int i = 0;
+        while (i < datePattern.length()) {
+            char c = datePattern.charAt(i);
+            /** Quoted literal text */
+            if (c == '\'') {
+                int close = datePattern.indexOf('\'', i + 1);
+                if (close == -1) {
+                    close = datePattern.length();
+                }
+                if (close == i + 1) {
+                    sb.append('\'');
+                } else {
+                    sb.append(datePattern, i + 1, close);
+                }
+                i = close + 1;
+            }
+            /** Pattern letters */
+            else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                int width = 1;
+                while (i + width < datePattern.length() && datePattern.charAt(i + width) == c) {
+                    width++;
+                }
+                if (!isFixedField(c, width)) {
+                    fixed = false;
+                }
+                fields.add(new int[] {c, sb.length(), width });
+                for (int j = 0; j < width; j++) {
+                    sb.append(c);
+                }
+                i += width;
+            }
+            /** Literal chars */
+            else {
+                sb.append(c);
+                i++;
+            }
+        }
+
+        this.fixedWidth = fixed;
+        this.template = sb.toString().toCharArray();
+        this.fieldChars = new boolean[template.length];
+        this.fieldLetters = new char[fields.size()];
+        this.fieldStarts = new int[fields.size()];
+        this.fieldWidths = new int[fields.size()];
+        for (int f = 0; f < fields.size(); f++) {
+            int[] field = fields.get(f);
+            fieldLetters[f] = (char) field[0];
+            fieldStarts[f] = field[1];
+            fieldWidths[f] = field[2];
+            for (int j = field[1]; j < field[1] + field[2]; j++) {
+                fieldChars[j] = true;
+            }
+        }
+
+        /** The date part ends at the first blank space of the pattern */
+        int blank = -1;
+        for (int j = 0; j < template.length && blank == -1; j++) {
+            if (template[j] == ' ' && !fieldChars[j]) {
+                blank = j;
+            }
+        }
+        this.dateLength = blank != -1 ? blank : template.length;
+    }
+
+    /**
+     * Compile a new timestamp parser for the given Java date pattern.
+     *
+     * @param datePattern - Java date pattern, as returned by StatisticsUtils.getDatePattern
+     * @return The timestamp parser
+     */
+    public static TimestampParser compile(String datePattern) {
+        return new TimestampParser(datePattern);
+    }
+
+    /**
+     * Is this field read with a fixed number of digits?
+     *
+     * @param letter
+     * @param width
+     * @return
+     */
+    private static boolean isFixedField(char letter, int width) {
+        switch (letter) {
+            case 'y':
+                return width == 4;
+            case 'M':
+                return width == 2;
+            case 'd':
+            case 'H':
+            case 'k':
+            case 'm':
+            case 's':
+                return width >= 2;
+            case 'S':
+                return width >= 3;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse the timestamp at the beginning of the given log line.
+     *
+     * @param line
+     * @return Epoch millis or INVALID if the line does not start with a timestamp
+     */
+    public long parse(CharSequence line) {
+        return parse(line, 0);
+    }
+
+    /**
+     * Parse the timestamp starting at the given offset of the log line.
+     *
+     * @param line
+     * @param offset
+     * @return Epoch millis or INVALID if there is no timestamp at the offset
+     */
+    public long parse(CharSequence line, int offset) {
+        if (!fixedWidth) {
+            return parseWithFormat(line, offset);
+        }
+
+        if (line.length() - offset < template.length) {
+            return INVALID;
+        }
+
+        /** Reuse the date and second of the previous line, if they are the same */
+        CachedSecond cached = cachedSecond;
+        long base;
+        if (cached != null && cached.matches(line, offset)) {
+            base = cached.millis;
+        } else {
+            base = parseSecond(line, offset);
+            if (base == INVALID) {
+                return INVALID;
+            }
+        }
+
+        /** Milliseconds */
+        long millis = 0;
+        for (int f = 0; f < fieldLetters.length; f++) {
+            if (fieldLetters[f] == 'S') {
+                int value = readNumber(line, offset + fieldStarts[f], fieldWidths[f]);
+                if (value == -1) {
+                    return INVALID;
+                }
+                millis = value;
+            }
+        }
+
+        return base + millis;
+    }
+
+    /**
+     * Resolve the date and second of the timestamp and keep them for the next lines.
+     *
+     * @param line
+     * @param offset
+     * @return Epoch millis of the timestamp without milliseconds, or INVALID
+     */
+    private long parseSecond(CharSequence line, int offset) {
+        /** Literal chars */
+        for (int i = 0; i < template.length; i++) {
+            if (!fieldChars[i] && line.charAt(offset + i) != template[i]) {
+                return INVALID;
+            }
+        }
+
+        /** Fields */
+        Calendar cal = calendar.get();
+        cal.clear();
+        for (int f = 0; f < fieldLetters.length; f++) {
+            char letter = fieldLetters[f];
+            if (letter == 'S') {
+                continue;
+            }
+            int value = readNumber(line, offset + fieldStarts[f], fieldWidths[f]);
+            if (value == -1) {
+                return INVALID;
+            }
+            switch (letter) {
+                case 'y':
+                    cal.set(Calendar.YEAR, value);
+                    break;
+                case 'M':
+                    cal.set(Calendar.MONTH, value - 1);
+                    break;
+                case 'd':
+                    cal.set(Calendar.DAY_OF_MONTH, value);
+                    break;
+                case 'H':
+                    cal.set(Calendar.HOUR_OF_DAY, value);
+                    break;
+                case 'k':
+                    cal.set(Calendar.HOUR_OF_DAY, value == 24 ? 0 : value);
+                    break;
+                case 'm':
+                    cal.set(Calendar.MINUTE, value);
+                    break;
+                case 's':
+                    cal.set(Calendar.SECOND, value);
+                    break;
+            }
+        }
+        long millis = cal.getTimeInMillis();
+
+        /** Keep the second for the next lines */
+        char[] key = new char[template.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = line.charAt(offset + i);
+        }
+        cachedSecond = new CachedSecond(key, millis);
+
+        return millis;
+    }
+
+    /**
+     * Read a number with a fixed number of digits.
+     *
+     * @param line
+     * @param start
+     * @param width
+     * @return The number or -1 if there is any char that is not a digit
+     */
+    private static int readNumber(CharSequence line, int start, int width) {
+        int value = 0;
+        for (int i = start; i < start + width; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Parse the timestamp with a date formatter, for the patterns without fixed width. It is assumed that the
+     * timestamp is composed of the first two words of the line.
+     *
+     * @param line
+     * @param offset
+     * @return Epoch millis or INVALID
+     */
+    private long parseWithFormat(CharSequence line, int offset) {
+        String text = getTimestamp(line, offset);
+        if (text == null) {
+            return INVALID;
+        }
+        Date date = dateFormat.get().parse(text, new ParsePosition(0));
+        if (date == null) {
+            return INVALID;
+        }
+
+        return date.getTime();
+    }
+
+    /**
+     * Get the timestamp text at the beginning of the given log line.
+     *
+     * @param line
+     * @return The timestamp as text or null if the line is too short
+     */
+    public String getTimestamp(CharSequence line) {
+        return getTimestamp(line, 0);
+    }
+
+    /**
+     * Get the timestamp text starting at the given offset of the log line.
+     *
+     * @param line
+     * @param offset
+     * @return The timestamp as text or null if the line is too short
+     */
+    public String getTimestamp(CharSequence line, int offset) {
+        if (fixedWidth) {
+            if (line.length() - offset < template.length) {
+                return null;
+            }
+            return line.subSequence(offset, offset + template.length).toString();
+        }
+
+        /** The first two words */
+        int dateEnd = nextBlank(line, skipBlanks(line, offset));
+        int timeEnd = nextBlank(line, skipBlanks(line, dateEnd));
+        if (dateEnd == timeEnd) {
+            return null;
+        }
+
+        return line.subSequence(skipBlanks(line, offset), timeEnd).toString();
+    }
+
+    /**
+     * Get the date part of the timestamp at the beginning of the given log line. The same String instance is returned
+     * while consecutive lines share the same date.
+     *
+     * @param line
+     * @return The date as text or null if the line is too short
+     */
+    public String getDate(CharSequence line) {
+        return getDate(line, 0);
+    }
+
+    /**
+     * Get the date part of the timestamp starting at the given offset of the log line. The same String instance is
+     * returned while consecutive lines share the same date.
+     *
+     * @param line
+     * @param offset
+     * @return The date as text or null if the line is too short
+     */
+    public String getDate(CharSequence line, int offset) {
+        int start = offset;
+        int end;
+        if (fixedWidth) {
+            end = offset + dateLength;
+            if (end > line.length()) {
+                return null;
+            }
+        } else {
+            start = skipBlanks(line, offset);
+            end = nextBlank(line, start);
+            if (end == start) {
+                return null;
+            }
+        }
+
+        /** Reuse the previous date */
+        String date = cachedDate;
+        if (date != null && date.length() == end - start) {
+            boolean same = true;
+            for (int i = 0; i < date.length() && same; i++) {
+                same = date.charAt(i) == line.charAt(start + i);
+            }
+            if (same) {
+                return date;
+            }
+        }
+
+        date = line.subSequence(start, end).toString();
+        cachedDate = date;
+
+        return date;
+    }
+
+    /**
+     * Skip blank chars.
+     *
+     * @param line
+     * @param pos
+     * @return Position of the first non blank char
+     */
+    private static int skipBlanks(CharSequence line, int pos) {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Find next blank char.
+     *
+     * @param line
+     * @param pos
+     * @return Position of the next blank char or the line length
+     */
+    private static int nextBlank(CharSequence line, int pos) {
+        while (pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Return the timestamp length.
+     *
+     * @return Number of chars of the timestamp, or -1 if the pattern has no fixed width
+     */
+    public int getLength() {
+        return fixedWidth ? template.length : -1;
+    }
+
+    /**
+     * Return datePattern attribute.
+     *
+     * @return datePattern - Attribute returned
+     */
+    public String getDatePattern() {
+        return datePattern;
+    }
+
+    /**
+     * Date and second of the last parsed timestamp.
+     *
+     * @author lagarcia
+     */
+    private final class CachedSecond {
+        /** Timestamp chars */
+        private final char[] key;
+        /** Epoch millis without milliseconds */
+        private final long millis;
+
+        /**
+         * Constructor
+         *
+         * @param key
+         * @param millis
+         */
+        CachedSecond(char[] key, long millis) {
+            this.key = key;
+            this.millis = millis;
+        }
+
+        /**
+         * Has the line the same date and second?
+         *
+         * @param line
+         * @param offset
+         * @return
+         */
+        boolean matches(CharSequence line, int offset) {
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != line.charAt(offset + i) && !(fieldChars[i] && template[i] == 'S')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
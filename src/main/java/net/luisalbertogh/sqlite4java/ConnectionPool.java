@@ -0,0 +1,242 @@
+package net.luisalbertogh.sqlite4java;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import net.luisalbertogh.log4jstats.utils.PropertiesLoader;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteJob;
+import com.almworks.sqlite4java.SQLiteQueue;
+
+/**
+ * This class keeps the DB files open between queries, for all the services. Each DB file gets a SQLiteQueue: its
+ * thread owns a read-only connection and runs the jobs of the services one after the other, so the schema and the
+ * page cache are kept from one query to the next. The number of DB files kept open is bounded, and the least recently
+ * queried one is closed when another one is needed.
+ *
+ * @author lagarcia
+ */
+public final class ConnectionPool {
+
+    /** Default number of DB files kept open */
+    private static final int DEFAULT_SIZE = 16;
+
+    /** Queues by DB file path, from the least recently used */
+    private static QueueMap queues;
+
+    /**
+     * Private constructor
+     */
+    private ConnectionPool() {
+    }
+
+    /**
+     * Run a job on the connection of a DB file and wait for it. The job runs on the thread of the DB file, so the
+     * connection and its statements must not leave it.
+     *
+     * @param filepath - DB file path. The file must exist
+     * @param job
+     * @return Result of the job
+     * @throws Exception - The error of the job
+     */
+    public static <T> T execute(String filepath, SQLiteJob<T> job) throws Exception {
+        submit(filepath, job);
+        return getResult(job);
+    }
+
+    /**
+     * Run a job on each DB file at the same time and wait for all of them. A DB file may be given more than once, its
+     * jobs then run one after the other. If a job fails, the jobs not finished yet are cancelled.
+     *
+     * @param filepaths - DB file paths. The files must exist
+     * @param jobs - Job of each DB file
+     * @return Results of the jobs, in the same order
+     * @throws Exception - The error of the first job that failed, in order
+     */
+    public static <T> List<T> executeAll(List<String> filepaths, List<? extends SQLiteJob<T>> jobs) throws Exception {
+        for (int i = 0; i < filepaths.size(); i++) {
+            submit(filepaths.get(i), jobs.get(i));
+        }
+
+        List<T> results = new ArrayList<T>(jobs.size());
+        try {
+            for (SQLiteJob<T> job : jobs) {
+                results.add(getResult(job));
+            }
+        } catch (Exception ex) {
+            for (SQLiteJob<T> job : jobs) {
+                job.cancel(false);
+            }
+            throw ex;
+        }
+
+        return results;
+    }
+
+    /**
+     * Queue a job on the connection of a DB file.
+     *
+     * @param filepath
+     * @param job
+     */
+    private static void submit(String filepath, SQLiteJob<?> job) {
+        /* Queued before any queue is closed, as the least recently used one may be this one */
+        synchronized (ConnectionPool.class) {
+            FileQueue queue = getQueue(filepath);
+            queue.execute(job);
+            queues.put(filepath, queue);
+        }
+    }
+
+    /**
+     * Wait for a job.
+     *
+     * @param job
+     * @return Result of the job
+     * @throws Exception - The error of the job
+     */
+    private static <T> T getResult(SQLiteJob<T> job) throws Exception {
+        try {
+            return job.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the queue of a DB file, starting a new one if it is not open. A DB file replaced since its queue was started
+     * gets a new queue.
+     *
+     * @param filepath
+     * @return
+     */
+    private static FileQueue getQueue(String filepath) {
+        if (queues == null) {
+            PropertiesLoader properties = new PropertiesLoader();
+            properties.load("/labels.properties");
+            String size = properties.getProperty("sqlitepoolsize");
+            queues = new QueueMap(size != null ? Integer.parseInt(size.trim()) : DEFAULT_SIZE);
+        }
+
+        Object fileKey = getFileKey(filepath);
+        FileQueue queue = queues.get(filepath);
+        if (queue != null && (queue.isStopped() || (fileKey != null && !fileKey.equals(queue.fileKey)))) {
+            queues.remove(filepath);
+            queue.stop(true);
+            queue = null;
+        }
+        if (queue == null) {
+            queue = new FileQueue(filepath, fileKey);
+            queue.start();
+        }
+
+        return queue;
+    }
+
+    /**
+     * Get the identity of a file on disk.
+     *
+     * @param filepath
+     * @return The file key, or null if the file system has none
+     */
+    private static Object getFileKey(String filepath) {
+        try {
+            return Files.readAttributes(Paths.get(filepath), BasicFileAttributes.class).fileKey();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Queues in access order, closing the least recently used one above the maximum size. The jobs already queued
+     * still run before it is closed.
+     *
+     * @author lagarcia
+     */
+    private static final class QueueMap extends LinkedHashMap<String, FileQueue> {
+        private static final long serialVersionUID = 1L;
+
+        /** Maximum number of DB files kept open */
+        private final int maxSize;
+
+        /**
+         * Constructor
+         *
+         * @param maxSizeArg
+         */
+        QueueMap(int maxSizeArg) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSizeArg;
+        }
+
+        /**
+         * @see LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileQueue> eldest) {
+            if (size() <= maxSize) {
+                return false;
+            }
+            eldest.getValue().stop(true);
+            return true;
+        }
+    }
+
+    /**
+     * Queue of the jobs of a DB file, with its read-only connection.
+     *
+     * @author lagarcia
+     */
+    private static final class FileQueue extends SQLiteQueue {
+        private final String filepath;
+
+        /** Identity of the file opened */
+        private final Object fileKey;
+
+        /**
+         * Constructor
+         *
+         * @param filepathArg
+         * @param fileKeyArg
+         */
+        FileQueue(String filepathArg, Object fileKeyArg) {
+            super(new File(filepathArg));
+            this.filepath = filepathArg;
+            this.fileKey = fileKeyArg;
+        }
+
+        /**
+         * @see SQLiteQueue#openConnection()
+         */
+        @Override
+        protected SQLiteConnection openConnection() throws SQLiteException {
+            try {
+                return Sqlite4JavaTool.openDBConnection(filepath, ConnectionProfile.QUERY);
+            } catch (SQLiteException ex) {
+                System.err.println(filepath + " cannot be opened with the query pragmas: " + ex.getMessage());
+            }
+
+            /* A failed open restarts the queue thread and the jobs wait; left not open, their first statement fails */
+            SQLiteConnection db = new SQLiteConnection(new File(filepath));
+            try {
+                db.openReadonly();
+            } catch (SQLiteException ex) {
+                System.err.println(filepath + " cannot be opened: " + ex.getMessage());
+            }
+            return db;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.luisalbertogh.sqlite4java;
+
+import net.luisalbertogh.log4jstats.utils.PropertiesLoader;
+
+/**
+ * Tuning of the SQLite connections for each use of the DB files. The PRAGMA statements of each profile are read from
+ * labels.properties and run when a connection is opened.
+ *
+ * @author lagarcia
+ */
+public enum ConnectionProfile {
+    /** Dumping of the log files */
+    INGEST("sqliteingestpragmas", false),
+
+    /** Charts and events table queries. The DB files are opened read-only */
+    QUERY("sqlitequerypragmas", true),
+
+    /** Following of the log files, while the DB files are queried */
+    LIVE("sqlitelivepragmas", false);
+
+    /** Property with the PRAGMA statements */
+    private final String property;
+
+    /** Open the DB files read-only? */
+    private final boolean readOnly;
+
+    /** PRAGMA statements, loaded when first used */
+    private String[] pragmas;
+
+    /**
+     * Constructor
+     *
+     * @param propertyArg
+     * @param readOnlyArg
+     */
+    ConnectionProfile(String propertyArg, boolean readOnlyArg) {
+        this.property = propertyArg;
+        this.readOnly = readOnlyArg;
+    }
+
+    /**
+     * Return readOnly attribute.
+     *
+     * @return
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Get the PRAGMA statements of the profile, as name=value.
+     *
+     * @return
+     */
+    public synchronized String[] getPragmas() {
+        if (pragmas == null) {
+            PropertiesLoader properties = new PropertiesLoader();
+            properties.load("/labels.properties");
+            String value = properties.getProperty(property);
+            pragmas = value != null && value.trim().length() != 0 ? value.trim().split("\\s*,\\s*") : new String[0];
+        }
+
+        return pragmas;
+    }
+}
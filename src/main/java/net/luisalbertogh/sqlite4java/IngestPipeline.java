@@ -0,0 +1,824 @@
+package net.luisalbertogh.sqlite4java;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import net.luisalbertogh.log4jstats.interfaces.LogSourceHandler;
+import net.luisalbertogh.log4jstats.services.logfiles.TableService;
+import net.luisalbertogh.log4jstats.utils.LogEvent;
+import net.luisalbertogh.log4jstats.utils.SourceRange;
+import net.luisalbertogh.log4jstats.utils.TimestampParser;
+import net.luisalbertogh.sqlite4java.Sqlite4JavaTool.TimeDivision;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+
+/**
+ * This class dumps log lines to the SQLite DB files in three stages connected by bounded queues. The thread reading
+ * the log files cuts the lines in chunks, a pool of workers parses and classifies the chunks, and one writer thread
+ * per DB file inserts the rows of its time division. The parsed chunks are taken in reading order, so the rows of each
+ * DB file are inserted in time order. When a stage is slower than the others the queues fill up and the previous
+ * stages wait for it.
+ * <p>
+ * Each log file is identified by its file key, which does not change when the file is rolled, and the hash of its
+ * first line, which tells a new file taking the key of an old one. The ranges read of each file are saved by the
+ * writers in the same transaction than their rows. A new run skips the ranges saved in the DB files it loads and reads
+ * the rest of the dates either on a range saved or as a new range, so the ranges saved never have gaps and no line is
+ * inserted twice. A range beyond the end of its file belongs to a file truncated and is read again. The writer of a DB
+ * file commits before the rows go on in another DB file, so a saved range never gets ahead of the rows committed, and
+ * a writer that fails rolls back its rows and ranges not committed.
+ * <p>
+ * A dump may leave the text search index to be built by each writer after its last row, in one pass. A DB file left
+ * without its index by an interrupted dump gets it at the end of its next load.
+ *
+ * @author lagarcia
+ */
+final class IngestPipeline implements LogSourceHandler {
+
+    /** Lines per parsing task */
+    private static final int CHUNK_SIZE = 2000;
+
+    /** Chunks queued per DB file writer */
+    private static final int WRITER_QUEUE_SIZE = 4;
+
+    /** Log files encoding */
+    private static final String ENCODING = "ISO-8859-1";
+
+    /** Wait between checks of the pipeline state, in millis */
+    private static final long POLL_MILLIS = 100;
+
+    /** Last element of the queues */
+    private static final Future<List<Row>> END_OF_CHUNKS = new FutureTask<List<Row>>(new Callable<List<Row>>() {
+        @Override
+        public List<Row> call() {
+            return null;
+        }
+    });
+    private static final WriterTask END_OF_ROWS = new WriterTask(null, null);
+
+    /** SQLite tool, for the events classification and the DB files */
+    private final Sqlite4JavaTool tool;
+
+    /** Table service, for the log lines parsing */
+    private final TableService ts;
+    private final String datePattern;
+
+    /** DB files base path and time division */
+    private final String dbPath;
+    private final TimeDivision division;
+
+    /** Rows per transaction and tuning of the DB connections */
+    private final int batchSize;
+    private final ConnectionProfile profile;
+
+    /** Build the text search index after the last row of each DB file? */
+    private final boolean deferTextIndex;
+
+    /** Parsing workers and their chunks, in reading order */
+    private final ExecutorService parsers;
+    private final BlockingQueue<Future<List<Row>>> parsedChunks;
+
+    /** Thread passing the parsed rows to the DB file writers */
+    private final Thread dispatcher;
+
+    /** Ranges read saved in the DB files, by log file identity and first line hash */
+    private final Map<List<String>, List<SourceRange>> checkpoints;
+
+    /** Log files started in this run, by identity */
+    private final Map<String, Source> sources = new HashMap<String, Source>();
+
+    /** Log file being read and its chunk being read */
+    private Source source;
+    private Chunk chunk;
+
+    /** First error of any stage */
+    private volatile Throwable failure;
+
+    /** Rows inserted by the finished writers */
+    private long insertedRows = 0;
+
+    /**
+     * Constructor. The stages are started at once. The ranges read are added to the ranges saved when the run
+     * finishes, so they can be passed to the next run without loading them again.
+     *
+     * @param toolArg
+     * @param tsArg - Table service with the dates interval set
+     * @param datePatternArg
+     * @param dbPathArg - DB files base path
+     * @param divisionArg
+     * @param batchSizeArg - Rows per transaction
+     * @param threads - Parsing workers
+     * @param profileArg - Tuning of the DB connections
+     * @param checkpointsArg - Ranges read by log file identity and first line hash
+     */
+    IngestPipeline(Sqlite4JavaTool toolArg, TableService tsArg, String datePatternArg, String dbPathArg,
+            TimeDivision divisionArg, int batchSizeArg, int threads, ConnectionProfile profileArg,
+            Map<List<String>, List<SourceRange>> checkpointsArg) {
+        this.profile = profileArg;
+        this.deferTextIndex = profileArg == ConnectionProfile.INGEST && toolArg.isTextIndexDeferred();
+        this.checkpoints = checkpointsArg;
+        this.tool = toolArg;
+        this.ts = tsArg;
+        this.datePattern = datePatternArg;
+        this.dbPath = dbPathArg;
+        this.division = divisionArg;
+        this.batchSize = batchSizeArg;
+        this.parsers = Executors.newFixedThreadPool(Math.max(1, threads));
+        this.parsedChunks = new ArrayBlockingQueue<Future<List<Row>>>(Math.max(1, threads) * 2);
+        this.dispatcher = new Thread(new Dispatcher(), "ingest-dispatcher");
+        this.dispatcher.start();
+    }
+
+    /**
+     * Load the ranges read of each log file saved in the DB files of the given base path.
+     *
+     * @param dbPath
+     * @return Ranges by log file identity and first line hash
+     * @throws SQLiteException - A DB file cannot be read, so the run has to stop instead of reading its lines again
+     */
+    static Map<List<String>, List<SourceRange>> loadCheckpoints(String dbPath) throws SQLiteException {
+        Map<List<String>, List<SourceRange>> checkpoints = new HashMap<List<String>, List<SourceRange>>();
+        File base = new File(dbPath).getAbsoluteFile();
+        File[] dbFiles = base.getParentFile().listFiles();
+        if (dbFiles == null) {
+            return checkpoints;
+        }
+
+        /* Only the DB files, not their -wal, -shm or -journal files */
+        Pattern dbFileName = Pattern.compile(Pattern.quote(base.getName()) + "__\\d+_\\d+");
+        for (File dbFile : dbFiles) {
+            if (dbFile.isFile() && dbFileName.matcher(dbFile.getName()).matches()) {
+                readCheckpoints(dbFile, checkpoints);
+            }
+        }
+
+        return checkpoints;
+    }
+
+    /**
+     * Load the ranges read saved in one DB file, for a run loading only that DB file.
+     *
+     * @param filepath - DB file path
+     * @return Ranges by log file identity and first line hash, empty if the DB file does not exist yet
+     * @throws SQLiteException - The DB file cannot be read
+     */
+    static Map<List<String>, List<SourceRange>> loadFileCheckpoints(String filepath) throws SQLiteException {
+        Map<List<String>, List<SourceRange>> checkpoints = new HashMap<List<String>, List<SourceRange>>();
+        File dbFile = new File(filepath);
+        if (dbFile.isFile()) {
+            readCheckpoints(dbFile, checkpoints);
+        }
+
+        return checkpoints;
+    }
+
+    /**
+     * Read the ranges read saved in a DB file, keeping the longest range of each start.
+     *
+     * @param dbFile
+     * @param checkpoints - Ranges by log file identity and first line hash
+     * @throws SQLiteException
+     */
+    private static void readCheckpoints(File dbFile, Map<List<String>, List<SourceRange>> checkpoints)
+            throws SQLiteException {
+        SQLiteConnection db = Sqlite4JavaTool.openDBConnection(dbFile.getPath(), ConnectionProfile.QUERY);
+        try {
+            for (Map.Entry<List<String>, List<SourceRange>> entry : LogEventsWriter.readCheckpoints(db).entrySet()) {
+                for (SourceRange range : entry.getValue()) {
+                    putRange(checkpoints, entry.getKey(), range);
+                }
+            }
+        } finally {
+            db.dispose();
+        }
+    }
+
+    /**
+     * Add a range read of a log file, keeping the longest range of each start. A range with no known last event
+     * keeps the last event of the range it replaces.
+     *
+     * @param checkpoints - Ranges by log file identity and first line hash
+     * @param key - Log file identity and first line hash
+     * @param range
+     */
+    private static void putRange(Map<List<String>, List<SourceRange>> checkpoints, List<String> key,
+            SourceRange range) {
+        List<SourceRange> ranges = checkpoints.get(key);
+        if (ranges == null) {
+            ranges = new ArrayList<SourceRange>();
+            checkpoints.put(key, ranges);
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            SourceRange other = ranges.get(i);
+            if (other.getStart() == range.getStart()) {
+                if (other.getEnd() < range.getEnd()) {
+                    long lastTime = range.getLastTime() != TimestampParser.INVALID ? range.getLastTime() : other
+                            .getLastTime();
+                    ranges.set(i, new SourceRange(range.getStart(), range.getEnd(), lastTime));
+                }
+                return;
+            }
+        }
+        ranges.add(range);
+    }
+
+    /**
+     * @see LogSourceHandler#startSource(String, String, String, long)
+     */
+    @Override
+    public List<SourceRange> startSource(String path, String fileKey, String firstLine, long length)
+            throws Exception {
+        if (failure != null || tool.isCancel()) {
+            return null;
+        }
+
+        /* Another path of a file already read in this run is skipped */
+        String id = getHash(fileKey);
+        if (sources.containsKey(id)) {
+            return null;
+        }
+
+        String firstLineHash = getHash(firstLine);
+        List<SourceRange> handled = new ArrayList<SourceRange>();
+        List<SourceRange> saved = checkpoints.get(Arrays.asList(id, firstLineHash));
+        if (saved != null) {
+            for (SourceRange range : saved) {
+                if (range.getEnd() <= length) {
+                    handled.add(range);
+                }
+            }
+            if (handled.size() < saved.size()) {
+                tool.printMessage(System.out, path + " has been truncated, reading it again");
+            }
+        }
+
+        if (chunk != null && !chunk.lines.isEmpty()) {
+            submitChunk();
+        }
+        source = new Source(id, firstLineHash, path);
+        sources.put(id, source);
+        chunk = null;
+
+        return handled;
+    }
+
+    /**
+     * @see LogSourceHandler#startRange(long, long)
+     */
+    @Override
+    public void startRange(long rangeStart, long start) throws Exception {
+        if (chunk != null && !chunk.lines.isEmpty()) {
+            submitChunk();
+        }
+        source.startRange(rangeStart, start);
+        chunk = new Chunk(source, rangeStart);
+    }
+
+    /**
+     * Get the MD5 hash of a text, to save an identity in the DB files.
+     *
+     * @param text
+     * @return
+     * @throws Exception
+     */
+    private static String getHash(String text) throws Exception {
+        byte[] hash = MessageDigest.getInstance("MD5").digest(text.getBytes(ENCODING));
+        return String.format("%032x", new BigInteger(1, hash));
+    }
+
+    /**
+     * @see LogSourceHandler#handleLine(CharSequence, long)
+     */
+    @Override
+    public boolean handleLine(CharSequence line, long nextPosition) throws Exception {
+        if (failure != null || tool.isCancel()) {
+            return false;
+        }
+
+        chunk.add(line.toString(), nextPosition);
+        source.lastPosition = nextPosition;
+        if (chunk.lines.size() == CHUNK_SIZE) {
+            submitChunk();
+        }
+
+        return true;
+    }
+
+    /**
+     * Send the chunk being read to the parsing workers.
+     *
+     * @throws InterruptedException
+     */
+    private void submitChunk() throws InterruptedException {
+        final Chunk lines = chunk;
+        chunk = new Chunk(lines.source, lines.rangeStart);
+        Future<List<Row>> parsed = parsers.submit(new Callable<List<Row>>() {
+            @Override
+            public List<Row> call() {
+                return parse(lines);
+            }
+        });
+        if (!put(parsedChunks, parsed)) {
+            parsed.cancel(false);
+        }
+    }
+
+    /**
+     * Wait for all the lines read to be inserted and stop the stages. Rows are no longer inserted when the process was
+     * cancelled. Otherwise the ranges read are added to the ranges saved.
+     *
+     * @return Rows inserted
+     * @throws Exception - The first error of any stage
+     */
+    long finish() throws Exception {
+        try {
+            if (chunk != null && !chunk.lines.isEmpty() && failure == null && !tool.isCancel()) {
+                submitChunk();
+            }
+        } finally {
+            close();
+        }
+
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+
+        /* Every line read is either committed or not an event for the DB */
+        if (!tool.isCancel()) {
+            for (Source read : sources.values()) {
+                read.endRange();
+                for (Map.Entry<Long, Long> range : read.ranges.entrySet()) {
+                    putRange(checkpoints, Arrays.asList(read.id, read.firstLine), new SourceRange(range.getKey(),
+                            range.getValue(), TimestampParser.INVALID));
+                }
+            }
+        }
+
+        return insertedRows;
+    }
+
+    /**
+     * Stop the stages, waiting for the writers to commit their rows.
+     *
+     * @throws InterruptedException
+     */
+    void close() throws InterruptedException {
+        try {
+            /* The end mark always fits once the dispatcher is done or has failed */
+            while (dispatcher.isAlive() && !parsedChunks.offer(END_OF_CHUNKS, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+            dispatcher.join();
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * Parse and classify a chunk of log lines.
+     *
+     * @param lines
+     * @return Rows of the log events of the chunk
+     */
+    private List<Row> parse(Chunk lines) {
+        List<Row> rows = new ArrayList<Row>();
+        Calendar cal = Calendar.getInstance();
+        for (int i = 0; i < lines.lines.size(); i++) {
+            LogEvent event = ts.getLogEvent(datePattern, lines.lines.get(i));
+            if (event == null) {
+                continue;
+            }
+
+            cal.setTimeInMillis(event.getTime());
+            String logLine = event.getText();
+            rows.add(new Row(event, Sqlite4JavaTool.getDBFilePath(dbPath, division, cal), tool
+                    .getAppEventName(logLine), tool.isChartEvent(logLine), lines.source, lines.rangeStart,
+                    lines.positions[i]));
+        }
+
+        return rows;
+    }
+
+    /**
+     * Put an element into a queue, waiting while it is full unless a stage fails.
+     *
+     * @param queue
+     * @param element
+     * @return False if the element was not queued because of a failure
+     * @throws InterruptedException
+     */
+    private <T> boolean put(BlockingQueue<T> queue, T element) throws InterruptedException {
+        while (!queue.offer(element, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Keep the first error of the stages.
+     *
+     * @param error
+     */
+    private synchronized void fail(Throwable error) {
+        if (failure == null) {
+            failure = error;
+        }
+    }
+
+    /**
+     * Thread taking the parsed chunks in reading order and passing their rows to the writer of each DB file.
+     *
+     * @author lagarcia
+     */
+    private final class Dispatcher implements Runnable {
+        /** DB file writers, by file path */
+        private final Map<String, PartitionWriter> writers = new HashMap<String, PartitionWriter>();
+
+        /** Writer of the last rows passed */
+        private PartitionWriter lastWriter;
+
+        /**
+         * @see Runnable#run()
+         */
+        @Override
+        public void run() {
+            try {
+                Future<List<Row>> parsed;
+                while ((parsed = parsedChunks.take()) != END_OF_CHUNKS) {
+                    if (failure != null || tool.isCancel()) {
+                        parsed.cancel(false);
+                        continue;
+                    }
+                    dispatch(parsed.get());
+                }
+            } catch (ExecutionException ex) {
+                fail(ex.getCause());
+            } catch (Throwable ex) {
+                fail(ex);
+            } finally {
+                /* Let the writers commit their rows */
+                for (PartitionWriter writer : writers.values()) {
+                    try {
+                        writer.finish();
+                        insertedRows += writer.getInsertedRows();
+                    } catch (InterruptedException ex) {
+                        fail(ex);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Pass the rows of a chunk to their writers. The rows of a DB file are consecutive, as they are in time order.
+         * When the rows go on in another DB file the previous writer commits first, so the reading positions saved
+         * never get ahead of the rows committed.
+         *
+         * @param rows
+         * @throws InterruptedException
+         */
+        private void dispatch(List<Row> rows) throws InterruptedException {
+            int from = 0;
+            for (int i = 1; i <= rows.size(); i++) {
+                if (i == rows.size() || !rows.get(i).filepath.equals(rows.get(from).filepath)) {
+                    String filepath = rows.get(from).filepath;
+                    PartitionWriter writer = writers.get(filepath);
+                    if (writer == null) {
+                        writer = new PartitionWriter(filepath);
+                        writers.put(filepath, writer);
+                        writer.start();
+                    }
+                    if (lastWriter != null && lastWriter != writer && !flush(lastWriter)) {
+                        return;
+                    }
+                    lastWriter = writer;
+                    if (!put(writer.queue, new WriterTask(rows.subList(from, i), null))) {
+                        return;
+                    }
+                    from = i;
+                }
+            }
+        }
+
+        /**
+         * Wait for a writer to commit the rows queued.
+         *
+         * @param writer
+         * @return False if the rows were not committed because of a failure
+         * @throws InterruptedException
+         */
+        private boolean flush(PartitionWriter writer) throws InterruptedException {
+            CountDownLatch committed = new CountDownLatch(1);
+            if (!put(writer.queue, new WriterTask(null, committed))) {
+                return false;
+            }
+            while (!committed.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Thread inserting the rows of one DB file. The DB connection is opened and used only by this thread.
+     *
+     * @author lagarcia
+     */
+    private final class PartitionWriter extends Thread {
+        private final String filepath;
+        private final BlockingQueue<WriterTask> queue = new ArrayBlockingQueue<WriterTask>(WRITER_QUEUE_SIZE);
+        private long rows = 0;
+
+        /**
+         * Constructor
+         *
+         * @param filepathArg - DB file path
+         */
+        PartitionWriter(String filepathArg) {
+            super("ingest-writer-" + new File(filepathArg).getName());
+            this.filepath = filepathArg;
+        }
+
+        /**
+         * @see Thread#run()
+         */
+        @Override
+        public void run() {
+            SQLiteConnection db = null;
+            LogEventsWriter writer = null;
+            try {
+                /* Get DB connection */
+                db = Sqlite4JavaTool.openDBConnection(filepath, profile);
+                /* Check if it is needed to create the data table first */
+                if (!tool.areTablesInDB(db, filepath)) {
+                    tool.createTables(db, filepath);
+                } else {
+                    tool.upgradeTables(db, filepath);
+                }
+                writer = new LogEventsWriter(db, batchSize, !deferTextIndex);
+
+                WriterTask task;
+                while ((task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) != END_OF_ROWS) {
+                    if (task != null && task.committed != null) {
+                        writer.commit();
+                        task.committed.countDown();
+                        continue;
+                    }
+                    if (task == null || tool.isCancel()) {
+                        if (failure != null) {
+                            break;
+                        }
+                        continue;
+                    }
+                    for (Row row : task.rows) {
+                        insertRow(writer, row);
+                    }
+                }
+                writer.commit();
+
+                /* Index the log lines loaded without the text search index */
+                if (failure == null && !tool.isCancel() && !Sqlite4JavaTool.isTextIndexReady(db)) {
+                    tool.buildTextIndex(db, filepath);
+                }
+                /* The follower inserts a few rows at a time and relies on the automatic merges */
+                else if (profile == ConnectionProfile.INGEST && rows > 0 && failure == null) {
+                    tool.mergeTextIndex(db);
+                }
+            } catch (Throwable ex) {
+                /* The rows and ranges not committed are read again by the next run */
+                fail(ex);
+                tool.printMessage(System.err, filepath + " rolled back: " + ex);
+                try {
+                    if (writer != null) {
+                        rows -= writer.rollback();
+                    }
+                } catch (Throwable rollbackEx) {
+                    fail(rollbackEx);
+                }
+            } finally {
+                try {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                } catch (Throwable ex) {
+                    fail(ex);
+                } finally {
+                    if (db != null) {
+                        db.dispose();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Insert a row and move the range read of its log file after it, which may commit.
+         *
+         * @param writer
+         * @param row
+         * @throws SQLiteException
+         */
+        private void insertRow(LogEventsWriter writer, Row row) throws SQLiteException {
+            String datetime = row.event.getDatetime();
+            writer.insert(datetime.split(" ")[0], datetime, row.event.getLevel(), row.appEvent, row.event.getText(),
+                    "", row.chart);
+            rows++;
+            writer.checkpoint(row.source.id, row.source.firstLine, row.rangeStart, row.source.path, row.position,
+                    row.event.getTime());
+        }
+
+        /**
+         * Wait for the rows queued to be committed.
+         *
+         * @throws InterruptedException
+         */
+        void finish() throws InterruptedException {
+            while (isAlive() && !queue.offer(END_OF_ROWS, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+            join();
+            tool.printMessage(System.out, rows + " rows inserted in " + filepath);
+        }
+
+        /**
+         * Return the rows inserted.
+         *
+         * @return
+         */
+        long getInsertedRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * A log file being read.
+     *
+     * @author lagarcia
+     */
+    private static final class Source {
+        private final String id;
+        private final String firstLine;
+        private final String path;
+
+        /** Ends of the ranges read, by range start */
+        private final Map<Long, Long> ranges = new HashMap<Long, Long>();
+
+        /** Range being read, where the reading started and position after the last line read */
+        private long rangeStart;
+        private long readStart;
+        private long lastPosition;
+
+        /**
+         * Constructor
+         *
+         * @param idArg - Log file identity
+         * @param firstLineArg - First line hash
+         * @param pathArg
+         */
+        Source(String idArg, String firstLineArg, String pathArg) {
+            this.id = idArg;
+            this.firstLine = firstLineArg;
+            this.path = pathArg;
+        }
+
+        /**
+         * Start reading a range.
+         *
+         * @param rangeStartArg - Start of the range
+         * @param start - Position the reading starts from
+         */
+        void startRange(long rangeStartArg, long start) {
+            endRange();
+            this.rangeStart = rangeStartArg;
+            this.readStart = start;
+            this.lastPosition = start;
+        }
+
+        /**
+         * Keep the range being read, if any line was read.
+         */
+        void endRange() {
+            if (lastPosition > readStart) {
+                ranges.put(rangeStart, lastPosition);
+            }
+        }
+    }
+
+    /**
+     * Lines of a log file read together, with the position after each one.
+     *
+     * @author lagarcia
+     */
+    private static final class Chunk {
+        private final Source source;
+        private final long rangeStart;
+        private final List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+        private final long[] positions = new long[CHUNK_SIZE];
+
+        /**
+         * Constructor
+         *
+         * @param sourceArg
+         * @param rangeStartArg - Start of the range of the lines
+         */
+        Chunk(Source sourceArg, long rangeStartArg) {
+            this.source = sourceArg;
+            this.rangeStart = rangeStartArg;
+        }
+
+        /**
+         * Add a line.
+         *
+         * @param line
+         * @param nextPosition
+         */
+        void add(String line, long nextPosition) {
+            positions[lines.size()] = nextPosition;
+            lines.add(line);
+        }
+    }
+
+    /**
+     * A log event ready to be inserted.
+     *
+     * @author lagarcia
+     */
+    private static final class Row {
+        private final LogEvent event;
+        private final String filepath;
+        private final String appEvent;
+        private final boolean chart;
+        private final Source source;
+        private final long rangeStart;
+        private final long position;
+
+        /**
+         * Constructor
+         *
+         * @param eventArg
+         * @param filepathArg - DB file of the event
+         * @param appEventArg - App. event name, or null
+         * @param chartArg
+         * @param sourceArg - Log file of the event
+         * @param rangeStartArg - Start of the range read of the event
+         * @param positionArg - Log file position after the event
+         */
+        Row(LogEvent eventArg, String filepathArg, String appEventArg, boolean chartArg, Source sourceArg,
+                long rangeStartArg, long positionArg) {
+            this.event = eventArg;
+            this.filepath = filepathArg;
+            this.appEvent = appEventArg;
+            this.chart = chartArg;
+            this.source = sourceArg;
+            this.rangeStart = rangeStartArg;
+            this.position = positionArg;
+        }
+    }
+
+    /**
+     * Work queued to a writer: rows to insert, or a request to commit the rows queued before.
+     *
+     * @author lagarcia
+     */
+    private static final class WriterTask {
+        private final List<Row> rows;
+
+        /** Counted down when the rows are committed, null for rows to insert */
+        private final CountDownLatch committed;
+
+        /**
+         * Constructor
+         *
+         * @param rowsArg - Rows to insert, or null
+         * @param committedArg - Latch of a commit request, or null
+         */
+        WriterTask(List<Row> rowsArg, CountDownLatch committedArg) {
+            this.rows = rowsArg;
+            this.committed = committedArg;
+        }
+    }
+}
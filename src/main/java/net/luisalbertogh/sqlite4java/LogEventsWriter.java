@@ -0,0 +1,381 @@
+package net.luisalbertogh.sqlite4java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.luisalbertogh.log4jstats.utils.SourceRange;
+import net.luisalbertogh.log4jstats.utils.TimestampParser;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteStatement;
+
+/**
+ * This class loads log events into a SQLite DB in bulk. The insert statements are prepared once per connection and the
+ * values are bound straight to them, and the rows are committed in transactions of a given number of rows instead of
+ * one transaction per insert. The range read of each log file is saved in the same transaction than its rows, so an
+ * interrupted load can be resumed without inserting any row twice or leaving any row out. A failed load is rolled back
+ * together with its ranges. The number of events per date, level and
+ * app. event of the rollup table is updated on every commit with the rows of the transaction. When the text search
+ * index is deferred the log lines are not indexed, and the DB is marked in the first transaction until the index is
+ * built.
+ *
+ * @author lagarcia
+ */
+public class LogEventsWriter {
+
+    /** Insert new log event. */
+    private static final String INSERT_LOG_EVENTS = "INSERT INTO logevents(DATE,DATETIME,LEVEL,EVENT,LOG,SOURCE,CHART) VALUES(?,?,?,?,?,?,?)";
+
+    /** Index log text in the text search table, under the id of its event. */
+    private static final String INSERT_TEXT = "INSERT INTO logtext(DOCID,LOG) VALUES(?,?)";
+
+    /** Add a rollup row, if it does not exist yet. */
+    private static final String INSERT_ROLLUP = "INSERT OR IGNORE INTO logevents_rollup(DATE,LEVEL,EVENT,CHART,COUNT) VALUES(?,?,?,?,0)";
+
+    /** Add events to a rollup row. */
+    private static final String UPDATE_ROLLUP = "UPDATE logevents_rollup SET COUNT=COUNT+? WHERE DATE=? AND LEVEL=? AND EVENT=? AND CHART=?";
+
+    /** Create the table of the log file ranges read, if it is not created yet. */
+    private static final String CREATE_CHECKPOINTS = "CREATE TABLE IF NOT EXISTS ingest_checkpoint("
+            + "source VARCHAR(64) NOT NULL, firstline VARCHAR(32) NOT NULL, start INTEGER NOT NULL, path VARCHAR(250), "
+            + "position INTEGER NOT NULL, lasttime INTEGER, PRIMARY KEY(source, firstline, start))";
+
+    /** Save the end of a range read of a log file. */
+    private static final String UPSERT_CHECKPOINT = "INSERT OR REPLACE INTO ingest_checkpoint(SOURCE,FIRSTLINE,START,PATH,POSITION,LASTTIME) VALUES(?,?,?,?,?,?)";
+
+    /** Select the ranges read. */
+    private static final String SELECT_CHECKPOINTS = "SELECT source, firstline, start, position, lasttime FROM ingest_checkpoint";
+
+    /** Create the load state table, if it is not created yet. */
+    private static final String CREATE_META = "CREATE TABLE IF NOT EXISTS ingest_meta("
+            + "name VARCHAR(50) PRIMARY KEY, value VARCHAR(250))";
+
+    /** Mark the text search index as not built. */
+    private static final String MARK_TEXT_INDEX_PENDING = "INSERT OR REPLACE INTO ingest_meta(NAME,VALUE) VALUES('textindex','pending')";
+
+    /** DB connection */
+    private final SQLiteConnection db;
+
+    /** Rows per transaction */
+    private final int batchSize;
+
+    /** Index the log lines as they are inserted? */
+    private final boolean indexText;
+
+    /** Prepared statements */
+    private final SQLiteStatement insertEvent;
+    private final SQLiteStatement insertText;
+    private final SQLiteStatement upsertCheckpoint;
+    private final SQLiteStatement insertRollup;
+    private final SQLiteStatement updateRollup;
+
+    /** Open transaction and its rows */
+    private boolean inTransaction = false;
+    private int pendingRows = 0;
+
+    /** Is the text search index marked as not built? */
+    private boolean textIndexMarked = false;
+
+    /** Rows not committed yet, by date, level, app. event and chart flag */
+    private final Map<List<String>, int[]> pendingCounts = new HashMap<List<String>, int[]>();
+
+    /** Ranges read of the rows not committed yet, by log file identity, first line and range start */
+    private final Map<List<Object>, Checkpoint> pendingCheckpoints = new LinkedHashMap<List<Object>, Checkpoint>();
+
+    /**
+     * Constructor
+     *
+     * @param dbArg
+     * @param batchSizeArg - Rows per transaction
+     * @throws SQLiteException
+     */
+    public LogEventsWriter(SQLiteConnection dbArg, int batchSizeArg) throws SQLiteException {
+        this(dbArg, batchSizeArg, true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param dbArg
+     * @param batchSizeArg - Rows per transaction
+     * @param indexTextArg - Index the log lines as they are inserted, or leave the index to be built later
+     * @throws SQLiteException
+     */
+    public LogEventsWriter(SQLiteConnection dbArg, int batchSizeArg, boolean indexTextArg) throws SQLiteException {
+        this.db = dbArg;
+        this.batchSize = Math.max(1, batchSizeArg);
+        this.indexText = indexTextArg;
+        this.insertEvent = db.prepare(INSERT_LOG_EVENTS);
+        this.insertText = db.prepare(INSERT_TEXT);
+        db.exec(CREATE_CHECKPOINTS);
+        if (!indexText) {
+            db.exec(CREATE_META);
+        }
+        this.upsertCheckpoint = db.prepare(UPSERT_CHECKPOINT);
+        this.insertRollup = db.prepare(INSERT_ROLLUP);
+        this.updateRollup = db.prepare(UPDATE_ROLLUP);
+    }
+
+    /**
+     * Read the ranges of the log files saved in a DB.
+     * 
+     * @param db
+     * @return Ranges by log file identity and first line hash, empty if the DB has no ranges table
+     * @throws SQLiteException
+     */
+    public static Map<List<String>, List<SourceRange>> readCheckpoints(SQLiteConnection db) throws SQLiteException {
+        Map<List<String>, List<SourceRange>> checkpoints = new HashMap<List<String>, List<SourceRange>>();
+        SQLiteStatement st;
+        try {
+            st = db.prepare(SELECT_CHECKPOINTS);
+        } catch (SQLiteException ex) {
+            /* DB loaded before the ranges were saved */
+            return checkpoints;
+        }
+
+        try {
+            while (st.step()) {
+                List<String> key = Arrays.asList(st.columnString(0), st.columnString(1));
+                List<SourceRange> ranges = checkpoints.get(key);
+                if (ranges == null) {
+                    ranges = new ArrayList<SourceRange>();
+                    checkpoints.put(key, ranges);
+                }
+                long lastTime = st.columnNull(4) ? TimestampParser.INVALID : st.columnLong(4);
+                ranges.add(new SourceRange(st.columnLong(2), st.columnLong(3), lastTime));
+            }
+        } finally {
+            st.dispose();
+        }
+
+        return checkpoints;
+    }
+
+    /**
+     * Insert a log event and its text. The transaction is committed by the checkpoint of the event once it reaches the
+     * batch size.
+     *
+     * @param date
+     * @param datetime
+     * @param level
+     * @param event - App. event name, or null
+     * @param log - Log line
+     * @param source
+     * @param chart - Is the event shown in the charts?
+     * @throws SQLiteException
+     */
+    public void insert(String date, String datetime, String level, String event, String log, String source,
+            boolean chart) throws SQLiteException {
+        if (!inTransaction) {
+            db.exec("BEGIN");
+            inTransaction = true;
+        }
+        if (!indexText && !textIndexMarked) {
+            db.exec(MARK_TEXT_INDEX_PENDING);
+            textIndexMarked = true;
+        }
+
+        /* Log event */
+        try {
+            insertEvent.bind(1, date);
+            insertEvent.bind(2, datetime);
+            insertEvent.bind(3, level);
+            if (event != null) {
+                insertEvent.bind(4, event);
+            } else {
+                insertEvent.bindNull(4);
+            }
+            insertEvent.bind(5, log);
+            insertEvent.bind(6, source);
+            insertEvent.bind(7, chart ? "1" : "0");
+            insertEvent.step();
+        } finally {
+            insertEvent.reset();
+        }
+
+        /* Log text for text search */
+        if (indexText) {
+            try {
+                insertText.bind(1, db.getLastInsertId());
+                insertText.bind(2, log);
+                insertText.step();
+            } finally {
+                insertText.reset();
+            }
+        }
+
+        /* Rollup row */
+        List<String> key = Arrays.asList(date, level, event != null ? event : "", chart ? "1" : "0");
+        int[] count = pendingCounts.get(key);
+        if (count == null) {
+            pendingCounts.put(key, new int[] {1 });
+        } else {
+            count[0]++;
+        }
+
+        pendingRows++;
+    }
+
+    /**
+     * Set the end of a range read of a log file after the rows inserted so far. The range is saved when the rows are
+     * committed, which happens here if the transaction has reached the batch size.
+     *
+     * @param source - Log file identity
+     * @param firstLine - Hash of the first line of the log file
+     * @param start - Start of the range
+     * @param path - Log file path
+     * @param position - Position after the last line read
+     * @param lastTime - Epoch millis of the last log event read
+     * @throws SQLiteException
+     */
+    public void checkpoint(String source, String firstLine, long start, String path, long position, long lastTime)
+            throws SQLiteException {
+        pendingCheckpoints.put(Arrays.<Object> asList(source, firstLine, start), new Checkpoint(source, firstLine,
+                start, path, position, lastTime));
+        if (pendingRows >= batchSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Commit the rows inserted so far, together with their rollup rows and the ranges read of their log files.
+     *
+     * @throws SQLiteException
+     */
+    public void commit() throws SQLiteException {
+        if (!inTransaction && pendingCheckpoints.isEmpty()) {
+            return;
+        }
+        if (!inTransaction) {
+            db.exec("BEGIN");
+            inTransaction = true;
+        }
+
+        /* Rollup rows */
+        for (Map.Entry<List<String>, int[]> entry : pendingCounts.entrySet()) {
+            List<String> key = entry.getKey();
+            try {
+                for (int i = 0; i < key.size(); i++) {
+                    insertRollup.bind(i + 1, key.get(i));
+                }
+                insertRollup.step();
+            } finally {
+                insertRollup.reset();
+            }
+            try {
+                updateRollup.bind(1, entry.getValue()[0]);
+                for (int i = 0; i < key.size(); i++) {
+                    updateRollup.bind(i + 2, key.get(i));
+                }
+                updateRollup.step();
+            } finally {
+                updateRollup.reset();
+            }
+        }
+
+        /* Ranges read */
+        for (Checkpoint checkpoint : pendingCheckpoints.values()) {
+            try {
+                upsertCheckpoint.bind(1, checkpoint.source);
+                upsertCheckpoint.bind(2, checkpoint.firstLine);
+                upsertCheckpoint.bind(3, checkpoint.start);
+                upsertCheckpoint.bind(4, checkpoint.path);
+                upsertCheckpoint.bind(5, checkpoint.position);
+                upsertCheckpoint.bind(6, checkpoint.lastTime);
+                upsertCheckpoint.step();
+            } finally {
+                upsertCheckpoint.reset();
+            }
+        }
+
+        db.exec("COMMIT");
+        clearPending();
+    }
+
+    /**
+     * Roll back the rows inserted since the last commit, together with their rollup rows and ranges read.
+     *
+     * @return Rows rolled back
+     * @throws SQLiteException
+     */
+    public int rollback() throws SQLiteException {
+        int rows = pendingRows;
+        try {
+            if (inTransaction) {
+                db.exec("ROLLBACK");
+            }
+        } finally {
+            /* The text search index mark, if any, is rolled back too */
+            textIndexMarked = false;
+            clearPending();
+        }
+
+        return rows;
+    }
+
+    /**
+     * Forget the transaction and its rows.
+     */
+    private void clearPending() {
+        inTransaction = false;
+        pendingRows = 0;
+        pendingCounts.clear();
+        pendingCheckpoints.clear();
+    }
+
+    /**
+     * Commit the pending rows and release the statements. The connection is not closed.
+     *
+     * @throws SQLiteException
+     */
+    public void close() throws SQLiteException {
+        try {
+            commit();
+        } finally {
+            insertEvent.dispose();
+            insertText.dispose();
+            upsertCheckpoint.dispose();
+            insertRollup.dispose();
+            updateRollup.dispose();
+        }
+    }
+
+    /**
+     * End of a range read of a log file.
+     *
+     * @author lagarcia
+     */
+    private static final class Checkpoint {
+        private final String source;
+        private final String firstLine;
+        private final long start;
+        private final String path;
+        private final long position;
+        private final long lastTime;
+
+        /**
+         * Constructor
+         *
+         * @param sourceArg
+         * @param firstLineArg
+         * @param startArg
+         * @param pathArg
+         * @param positionArg
+         * @param lastTimeArg
+         */
+        Checkpoint(String sourceArg, String firstLineArg, long startArg, String pathArg, long positionArg,
+                long lastTimeArg) {
+            this.source = sourceArg;
+            this.firstLine = firstLineArg;
+            this.start = startArg;
+            this.path = pathArg;
+            this.position = positionArg;
+            this.lastTime = lastTimeArg;
+        }
+    }
+}
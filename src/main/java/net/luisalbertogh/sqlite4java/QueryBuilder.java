@@ -0,0 +1,144 @@
+package net.luisalbertogh.sqlite4java;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteStatement;
+
+/**
+ * This class builds the WHERE clause of a query with parameters instead of literal values. The same filters give the
+ * same SQL text whatever their values, so the statement prepared for it is taken from the statement cache of the
+ * connection instead of being parsed and planned again.
+ *
+ * @author lagarcia
+ */
+public final class QueryBuilder {
+    /** Clauses after the SELECT ... FROM */
+    private final StringBuilder clauses = new StringBuilder();
+
+    /** Values of the parameters, in order */
+    private final List<Object> params = new ArrayList<Object>();
+
+    /** Is there a WHERE clause already? */
+    private boolean where;
+
+    /**
+     * Default constructor
+     */
+    public QueryBuilder() {
+    }
+
+    /**
+     * Constructor of a copy, to add more clauses to the same query.
+     *
+     * @param other
+     */
+    public QueryBuilder(QueryBuilder other) {
+        this.clauses.append(other.clauses);
+        this.params.addAll(other.params);
+        this.where = other.where;
+    }
+
+    /**
+     * Add a condition, joined to the previous ones with AND.
+     *
+     * @param condition - Condition with a ? for each value
+     * @param values - Strings, numbers or nulls
+     * @return This builder
+     */
+    public QueryBuilder where(String condition, Object... values) {
+        clauses.append(where ? " AND " : " WHERE ").append(condition);
+        where = true;
+        for (Object value : values) {
+            params.add(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Add a condition on a column being one of a list of values.
+     *
+     * @param column
+     * @param values
+     * @return This builder
+     */
+    public QueryBuilder in(String column, Collection<?> values) {
+        StringBuilder condition = new StringBuilder(column).append(" in(");
+        for (int i = 0; i < values.size(); i++) {
+            condition.append(i == 0 ? "?" : ",?");
+        }
+        condition.append(")");
+
+        return where(condition.toString(), values.toArray());
+    }
+
+    /**
+     * Add a clause after the conditions, such as GROUP BY or ORDER BY.
+     *
+     * @param clause - Clause with a ? for each value
+     * @param values - Strings, numbers or nulls
+     * @return This builder
+     */
+    public QueryBuilder append(String clause, Object... values) {
+        clauses.append(" ").append(clause);
+        for (Object value : values) {
+            params.add(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the SQL text of the query.
+     *
+     * @param select - SELECT ... FROM part of the query
+     * @return
+     */
+    public String getSql(String select) {
+        return select.trim() + clauses;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return clauses + " " + params;
+    }
+
+    /**
+     * Prepare the query on a connection and bind its parameters. The statement comes from the cache of the connection,
+     * where it goes back when it is disposed.
+     *
+     * @param db
+     * @param select - SELECT ... FROM part of the query
+     * @return Statement ready to step
+     * @throws SQLiteException
+     */
+    public SQLiteStatement prepare(SQLiteConnection db, String select) throws SQLiteException {
+        SQLiteStatement st = db.prepare(getSql(select), true);
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                Object value = params.get(i);
+                if (value == null) {
+                    st.bindNull(i + 1);
+                } else if (value instanceof Integer) {
+                    st.bind(i + 1, ((Integer) value).intValue());
+                } else if (value instanceof Number) {
+                    st.bind(i + 1, ((Number) value).longValue());
+                } else {
+                    st.bind(i + 1, value.toString());
+                }
+            }
+        } catch (SQLiteException ex) {
+            st.dispose();
+            throw ex;
+        }
+
+        return st;
+    }
+}
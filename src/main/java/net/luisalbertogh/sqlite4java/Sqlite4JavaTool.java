@@ -5,21 +5,36 @@ package net.luisalbertogh.sqlite4java;
 
 import java.io.File;
 import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
 
+import net.luisalbertogh.log4jstats.interfaces.LogSourceHandler;
 import net.luisalbertogh.log4jstats.services.logfiles.TableService;
+import net.luisalbertogh.log4jstats.utils.AppEventMatcher;
 import net.luisalbertogh.log4jstats.utils.PropertiesLoader;
+import net.luisalbertogh.log4jstats.utils.SourceRange;
 import net.luisalbertogh.log4jstats.utils.StatisticsUtils;
 
 import com.almworks.sqlite4java.SQLiteConnection;
@@ -45,42 +60,126 @@ public class Sqlite4JavaTool {
     /** Application events for the table */
     private Map<String, String> appEventList4Charts;
 
+    /** Matchers for the application events of the table and the charts */
+    private AppEventMatcher appEventMatcher;
+    private AppEventMatcher appEventMatcher4Charts;
+
     /** Create table statement. */
     private static final String CREATE_TABLE = "CREATE TABLE logevents(id INTEGER PRIMARY KEY, date DATE NOT NULL, "
             + "datetime TIMESTAMP NOT NULL, level VARCHAR(10) NOT NULL, event VARCHAR(100), log VARCHAR(250), "
             + "source VARCHAR(50), chart CHAR(1))";
 
-    /** Create table for text search. */
-    private static final String CREATE_VIRTUAL_TABLE = "CREATE VIRTUAL TABLE logtext using fts4(text)";
+    /** Create table for text search. It only keeps the index of the log column, with the event id as docid. */
+    private static final String CREATE_VIRTUAL_TABLE = "CREATE VIRTUAL TABLE logtext "
+            + "using fts4(content=\"logevents\", log)";
+
+    /** Text search table of the DB files created before the external content, with a copy of the log lines. */
+    private static final String DROP_VIRTUAL_TABLE = "DROP TABLE logtext";
+
+    /** Index the log lines of the events table. */
+    private static final String REBUILD_VIRTUAL_TABLE = "INSERT INTO logtext(logtext) VALUES('rebuild')";
+
+    /** Merge the index segments while the rows are inserted. */
+    private static final String AUTOMERGE_VIRTUAL_TABLE = "INSERT INTO logtext(logtext) VALUES('automerge=8')";
+
+    /** Merge some of the index segments left by a dump. */
+    private static final String MERGE_VIRTUAL_TABLE = "INSERT INTO logtext(logtext) VALUES('merge=500,8')";
 
-    /** Insert new log event. */
-    private static final String INSERT_LOG_EVENTS = "INSERT INTO logevents(DATE,DATETIME,LEVEL,EVENT,LOG,SOURCE,CHART) VALUES(?,?,?,?,?,?,?)";
+    /** Merge all the index segments into one. */
+    private static final String OPTIMIZE_VIRTUAL_TABLE = "INSERT INTO logtext(logtext) VALUES('optimize')";
 
-    /** Insert log text into text search table. */
-    private static final String INSERT_TEXT = "INSERT INTO logtext(TEXT) VALUES(?)";
+    /** Select the mark of a text search index not built yet. */
+    private static final String SELECT_TEXT_INDEX_PENDING = "SELECT value FROM ingest_meta WHERE name='textindex'";
+
+    /** Remove the mark of a text search index not built yet. */
+    private static final String DELETE_TEXT_INDEX_PENDING = "DELETE FROM ingest_meta WHERE name='textindex'";
+
+    /** Indexes for the statistics and the events table queries. */
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS logevents_date_idx ON logevents(date, level, event)",
+            "CREATE INDEX IF NOT EXISTS logevents_datetime_idx ON logevents(datetime)" };
+
+    /** Create table of the number of events per date, level and app. event. */
+    private static final String CREATE_ROLLUP_TABLE = "CREATE TABLE logevents_rollup(date DATE NOT NULL, "
+            + "level VARCHAR(10) NOT NULL, event VARCHAR(100) NOT NULL, chart CHAR(1) NOT NULL, "
+            + "count INTEGER NOT NULL, PRIMARY KEY(date, level, event, chart))";
+
+    /** Count the events of a DB created before the rollup table. Events without app. event are kept as ''. */
+    private static final String FILL_ROLLUP_TABLE = "INSERT INTO logevents_rollup(date, level, event, chart, count) "
+            + "SELECT date, level, ifnull(event, ''), ifnull(chart, '0'), count(*) FROM logevents GROUP BY 1, 2, 3, 4";
 
     /** Select log events. */
     private static final String SELECT_LOG_EVENTS = "SELECT id FROM logevents WHERE datetime=?";
 
+    /** Select the definition of the text search table. */
+    private static final String SELECT_VIRTUAL_TABLE = "SELECT sql FROM sqlite_master WHERE type='table' "
+            + "AND name='logtext'";
+
+    /** Select the rollup table. */
+    private static final String SELECT_ROLLUP_TABLE = "SELECT name FROM sqlite_master WHERE type='table' "
+            + "AND name='logevents_rollup'";
+
     /** Maximum number of dates to process. */
     private static final int MAX_NUMBER_DATES = 366;
 
-    /** Do not return more than these events from the service. */
-    private static final int MAX_NUMBER_EVENTS = 500;
+    /** Command line option of the tail mode */
+    private static final String TAIL_OPTION = "-tail";
 
     /** Input data format message */
     private static final String DATE_FORMAT = "dd-MM-yyyy";
 
+    /** Maximum wait for a change notification before reading the log files again, in tail mode. */
+    private static final long TAIL_RESCAN_MILLIS = 60000;
+
+    /** Default rows per transaction. */
+    private static final int DEFAULT_BATCH_SIZE = 10000;
+
+    /** Rows per transaction */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Workers parsing the log lines */
+    private int ingestThreads = Runtime.getRuntime().availableProcessors();
+
+    /** DB files loaded at once */
+    private int ingestPartitions = 1;
+
+    /** DB files of a dump and DB files loaded so far */
+    private int totalPartitions = 0;
+    private int loadedPartitions = 0;
+
+    /** Build the text search index after the dump instead of row by row */
+    private boolean deferTextIndex = false;
+
     /** Row counter */
     private long insertedRows = 0;
 
     /** Output for GUI */
     private JTextArea output;
 
+    /** Progress bar for GUI */
+    private JProgressBar progressBar;
+
     /**
      * Cancel process execution.
      */
-    private boolean cancel = false;
+    private volatile boolean cancel = false;
+
+    /**
+     * Reader of the log files of a dump, from a directory or from the HTTP service.
+     * 
+     * @author lagarcia
+     */
+    private static interface SourceReader {
+        /**
+         * Read the log lines within the dates interval of the table service.
+         * 
+         * @param ts
+         * @param datePattern
+         * @param handler
+         * @throws Exception
+         */
+        void readSources(TableService ts, String datePattern, LogSourceHandler handler) throws Exception;
+    }
 
     /**
      * Select the time division for the DB dumping format.
@@ -120,16 +219,32 @@ public class Sqlite4JavaTool {
     public static void main(String args[]) {
 
         try {
-            if (args.length < 2) {
+            if (args.length < 2 && !(args.length == 1 && TAIL_OPTION.equals(args[0]))) {
                 System.err.println("Usage: java Sqlite4JavaTool <Init_Date> <End_Date> <Time_Division>");
+                System.err.println("       java Sqlite4JavaTool " + TAIL_OPTION + " [<Init_Date> [<Time_Division>]]");
                 System.err.println("\tDate format: " + DATE_FORMAT);
                 System.err.println("\tTime division: MONTH (default) | WEEK ");
+                System.err.println("\t" + TAIL_OPTION + ": keep inserting the new events as they are written");
                 System.exit(0);
             }
 
             /** Date formatter */
             SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
 
+            /* Tail mode, from the given date or today */
+            if (TAIL_OPTION.equals(args[0])) {
+                Date from = args.length >= 2 ? sdf.parse(args[1]) : getDayStart(new Date()).getTime();
+                System.out.println("From: " + sdf.format(from));
+                TimeDivision division = TimeDivision.MONTH;
+                if (args.length >= 3 && "WEEK".equals(args[2])) {
+                    division = TimeDivision.WEEK;
+                }
+                System.out.println("Time division: " + division.getName());
+
+                new Sqlite4JavaTool().tailFilesToDB(from, division, null, null);
+                return;
+            }
+
             /* From */
             String fromStr = args[0];
             System.out.println("From: " + fromStr);
@@ -165,15 +280,8 @@ public class Sqlite4JavaTool {
      */
     public void dumpFilesToDB(Date from, Date to, TimeDivision division, String logsPath, String dbPath) {
         try {
-            /** Load properties */
-            properties.load("/labels.properties");
-            /** Load chart properties */
-            chartProps.load("/charts.properties");
-            printMessage(System.out, properties.getProperty("propsloaded"));
-
-            /** Init events list */
-            initAppEvents(chartProps.getProperty("appeventstable"));
-            initAppEvents4Charts(chartProps.getProperty("appevents"));
+            /** Load properties and events lists */
+            loadSettings();
 
             /** Init files paths */
             if (logsPath == null) {
@@ -184,102 +292,16 @@ public class Sqlite4JavaTool {
                         + properties.getProperty("sqlitebasename");
             }
 
-            /** Get log4j date pattern */
-            String conversionPattern = StatisticsUtils.getConversionPattern(properties.getProperty("log4jfilepath"),
-                    properties.getProperty("log4jlogger"), properties.getProperty("log4jappender"));
-            String datetimePattern = StatisticsUtils.getDatePattern(conversionPattern);
-
-            /** Date formatters */
-            SimpleDateFormat sdf = new SimpleDateFormat(datetimePattern);
-
-            /** Init table service */
-            TableService ts = new TableService(Integer.parseInt(properties.getProperty("defaultintervaltime")),
-                    MAX_NUMBER_DATES);
-            /** Init log levels */
-            ts.initLogLevels();
-            /** Init app. events list */
-            ts.initAppEvents(chartProps.getProperty("appeventstable"));
-
-            /* Init the latest date to the oldest date */
-            Date prevNow = null;
-            Date now = to;
-            Calendar dateCal = Calendar.getInstance();
-            String prevFilepath = "";
-            SQLiteConnection db = null;
-            do {
-                /* The previous date is the same than the current date, exit the loop */
-                if (prevNow != null && now.equals(prevNow)) {
-                    break;
-                }
-
-                /* Extract events from log files with max. number of events */
-                ts.setDatesInterval(from, now);
-                List<Map<String, String>> tableDataset = ts.getEventsData(datetimePattern, logsPath, null, 0,
-                        MAX_NUMBER_EVENTS);
-
-                /* Only the last record was found, exit the loop */
-                if (tableDataset.size() < 2) {
-                    break;
-                }
-
-                /* Log message */
-                printMessage(System.out, properties.getProperty("insertingrows"));
-
-                /* Iterate through the list */
-                for (Map<String, String> rowData : tableDataset) {
-                    /* Cancel process */
-                    if (cancel) {
-                        break;
-                    }
-
-                    /* Event date */
-                    Date date = sdf.parse(rowData.get("date"));
-                    dateCal.setTime(date);
-
-                    /* Datebase file */
-                    String filepath = dbPath + "__";
-                    switch (division) {
-                        case MONTH: {
-                            filepath += dateCal.get(Calendar.MONTH);
-                            break;
-                        }
-                        case WEEK: {
-                            filepath += dateCal.get(Calendar.WEEK_OF_YEAR);
-                            break;
-                        }
-                    }
-                    filepath += "_" + dateCal.get(Calendar.YEAR);
-
-                    boolean createTable = false;
-                    /* New DB file */
-                    if (!filepath.equalsIgnoreCase(prevFilepath)) {
-                        if (db != null) {
-                            db.dispose();
-                        }
-                        /* Get DB connection */
-                        db = openDBConnection(filepath);
-                        /* Check if it is needed to create the data table first if DB file does not exist */
-                        File dbFile = new File(filepath);
-                        if (!dbFile.exists() || !areTablesInDB(db, filepath)) {
-                            createTable = true;
-                        }
-                        /* Previous file path */
-                        prevFilepath = filepath;
-                    }
-
-                    /* Insert the date */
-                    insertData(db, rowData, filepath, createTable);
+            /* Read the log files of the time division of each DB file and insert its events */
+            printMessage(System.out, properties.getProperty("insertingrows"));
+            final String logsDir = logsPath;
+            insertedRows += dumpPartitions(from, to, division, dbPath, getConversionPattern(), new SourceReader() {
+                @Override
+                public void readSources(TableService ts, String datePattern, LogSourceHandler handler)
+                        throws Exception {
+                    ts.readSources(datePattern, logsDir, handler);
                 }
-
-                /* Next date */
-                prevNow = now;
-                now = sdf.parse(tableDataset.get(tableDataset.size() - 1).get("date"));
-            } while (from.before(now) && !cancel);
-
-            /** Close any possible open db connection */
-            if (db != null) {
-                db.dispose();
-            }
+            });
 
             printMessage(System.out, insertedRows + " " + properties.getProperty("rowsinserted"));
             printMessage(System.out, properties.getProperty("processfinished"));
@@ -298,15 +320,8 @@ public class Sqlite4JavaTool {
      */
     public void dumpFilesToDBbyHTTP(Date from, Date to, TimeDivision division, String dbPath) {
         try {
-            /** Load properties */
-            properties.load("/labels.properties");
-            /** Load chart properties */
-            chartProps.load("/charts.properties");
-            printMessage(System.out, properties.getProperty("propsloaded"));
-
-            /** Init events list */
-            initAppEvents(chartProps.getProperty("appeventstable"));
-            initAppEvents4Charts(chartProps.getProperty("appevents"));
+            /** Load properties and events lists */
+            loadSettings();
 
             /** Init files paths */
             if (dbPath == null) {
@@ -314,171 +329,410 @@ public class Sqlite4JavaTool {
                         + properties.getProperty("sqlitebasename");
             }
 
-            /** Get log4j date pattern */
-            String conversionPattern = StatisticsUtils.getConversionPattern(properties.getProperty("log4jfilepath"),
-                    properties.getProperty("log4jlogger"), properties.getProperty("log4jappender"));
-            String datetimePattern = StatisticsUtils.getDatePattern(conversionPattern);
-
-            /** Date formatters */
-            SimpleDateFormat sdf = new SimpleDateFormat(datetimePattern);
-
-            /** Init table service */
-            TableService ts = new TableService(Integer.parseInt(properties.getProperty("defaultintervaltime")),
-                    MAX_NUMBER_DATES);
-            /** Init log levels */
-            ts.initLogLevels();
-            /** Init app. events list */
-            ts.initAppEvents(chartProps.getProperty("appeventstable"));
-
-            /* Init the lowest date limit (now) to the oldest date (Date is in ascending order) */
-            Date prevNow = null;
-            Date now = from;
-            Calendar dateCal = Calendar.getInstance();
-            String prevFilepath = "";
-            SQLiteConnection db = null;
-            do {
-                /* The previous date is the same than the current date, exit the loop */
-                if (prevNow != null && now.equals(prevNow)) {
-                    break;
+            /* Request the log file of every day of the time division of each DB file and insert its events */
+            printMessage(System.out, properties.getProperty("insertingrows"));
+            final String url = properties.getProperty("urlservice");
+            final String baseName = properties.getProperty("logfilesbasename");
+            insertedRows += dumpPartitions(from, to, division, dbPath, getConversionPattern(), new SourceReader() {
+                @Override
+                public void readSources(TableService ts, String datePattern, LogSourceHandler handler)
+                        throws Exception {
+                    ts.readSourcesByHTTP(url, baseName, handler);
                 }
+            });
 
-                /* Extract events from log files with max. number of events */
-                ts.setDatesInterval(now, to);
-                List<Map<String, String>> tableDataset = ts.getEventsDataByHTTP(properties.getProperty("urlservice"),
-                        properties.getProperty("logfilesbasename"), datetimePattern, null, 0, MAX_NUMBER_EVENTS);
+            printMessage(System.out, insertedRows + " " + properties.getProperty("rowsinserted"));
+            printMessage(System.out, properties.getProperty("processfinished"));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Insert the events of a dates interval into the DB files, loading several DB files at once. Each DB file gets
+     * its own pipeline, which reads only the events of its time division and skips the ranges of the log files
+     * saved in that DB file. A DB file that fails is reported and the others go on.
+     * 
+     * @param from
+     * @param to
+     * @param division
+     * @param dbPath - DB files base path
+     * @param conversionPattern
+     * @param reader - Reader of the log files
+     * @return Rows inserted
+     * @throws InterruptedException
+     */
+    private long dumpPartitions(Date from, Date to, final TimeDivision division, final String dbPath,
+            String conversionPattern, final SourceReader reader) throws InterruptedException {
+        final String datetimePattern = StatisticsUtils.getDatePattern(conversionPattern);
+        Map<String, List<Date[]>> partitions = getPartitions(from, to, division, dbPath);
+        int workers = Math.max(1, Math.min(ingestPartitions, partitions.size()));
+        final int threads = Math.max(1, ingestThreads / workers);
+        startProgress(partitions.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            /* The table services are created here, as they read the properties */
+            Map<String, Future<Long>> results = new LinkedHashMap<String, Future<Long>>();
+            for (final Map.Entry<String, List<Date[]>> partition : partitions.entrySet()) {
+                final TableService ts = createTableService(conversionPattern);
+                results.put(partition.getKey(), executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return dumpPartition(partition.getKey(), partition.getValue(), ts, datetimePattern, dbPath,
+                                division, threads, reader);
+                    }
+                }));
+            }
 
-                /* Only the last record was found, exit the loop */
-                if (tableDataset.size() < 2) {
-                    break;
+            long rows = 0;
+            for (Map.Entry<String, Future<Long>> result : results.entrySet()) {
+                try {
+                    rows += result.getValue().get();
+                } catch (ExecutionException ex) {
+                    printMessage(System.err, result.getKey() + ": " + ex.getCause());
+                    ex.getCause().printStackTrace();
                 }
+            }
 
-                /* Log message */
-                printMessage(System.out, properties.getProperty("insertingrows"));
+            return rows;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                /* Iterate through the list */
-                for (Map<String, String> rowData : tableDataset) {
-                    /* Cancel process */
-                    if (cancel) {
-                        break;
-                    }
+    /**
+     * Insert the events of the dates intervals of one DB file.
+     * 
+     * @param filepath - DB file path
+     * @param intervals - Dates intervals of the DB file, usually one
+     * @param ts - Table service of the DB file
+     * @param datetimePattern
+     * @param dbPath - DB files base path
+     * @param division
+     * @param threads - Parsing workers
+     * @param reader - Reader of the log files
+     * @return Rows inserted
+     * @throws Exception
+     */
+    private long dumpPartition(String filepath, List<Date[]> intervals, TableService ts, String datetimePattern,
+            String dbPath, TimeDivision division, int threads, SourceReader reader) throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+        long rows = 0;
+        for (Date[] interval : intervals) {
+            if (cancel) {
+                break;
+            }
+            printMessage(System.out, properties.getProperty("loadingdbfile") + " " + filepath + " ("
+                    + sdf.format(interval[0]) + " - " + sdf.format(interval[1]) + ")");
+            ts.setDatesInterval(interval[0], interval[1]);
+            IngestPipeline pipeline = new IngestPipeline(this, ts, datetimePattern, dbPath, division, batchSize,
+                    threads, ConnectionProfile.INGEST, IngestPipeline.loadFileCheckpoints(filepath));
+            try {
+                reader.readSources(ts, datetimePattern, pipeline);
+                rows += pipeline.finish();
+            } finally {
+                /** Stop the pipeline and close any possible open db connection */
+                pipeline.close();
+            }
+        }
 
-                    /* Event date */
-                    Date date = sdf.parse(rowData.get("date"));
-                    dateCal.setTime(date);
+        partitionLoaded();
+        return rows;
+    }
 
-                    /* Datebase file */
-                    String filepath = dbPath + "__";
-                    switch (division) {
-                        case MONTH: {
-                            filepath += dateCal.get(Calendar.MONTH);
-                            break;
-                        }
-                        case WEEK: {
-                            filepath += dateCal.get(Calendar.WEEK_OF_YEAR);
-                            break;
-                        }
-                    }
-                    filepath += "_" + dateCal.get(Calendar.YEAR);
+    /**
+     * Split a dates interval by the DB files of its time divisions. The last days of a year may share the DB file of
+     * its first week, so a DB file may have several intervals.
+     * 
+     * @param from
+     * @param to
+     * @param division
+     * @param dbPath - DB files base path
+     * @return Dates intervals, from and to both included, by DB file path
+     */
+    static Map<String, List<Date[]>> getPartitions(Date from, Date to, TimeDivision division, String dbPath) {
+        Map<String, List<Date[]>> partitions = new LinkedHashMap<String, List<Date[]>>();
+        Calendar day = getDayStart(from);
+        Date start = from;
+        String filepath = getDBFilePath(dbPath, division, day);
+        day.add(Calendar.DATE, 1);
+        while (!day.getTime().after(to)) {
+            String dayFilepath = getDBFilePath(dbPath, division, day);
+            if (!dayFilepath.equals(filepath)) {
+                addPartition(partitions, filepath, start, new Date(day.getTimeInMillis() - 1));
+                filepath = dayFilepath;
+                start = day.getTime();
+            }
+            day.add(Calendar.DATE, 1);
+        }
+        addPartition(partitions, filepath, start, to);
 
-                    boolean createTable = false;
-                    /* New DB file */
-                    if (!filepath.equalsIgnoreCase(prevFilepath)) {
-                        if (db != null) {
-                            db.dispose();
-                        }
-                        /* Get DB connection */
-                        db = openDBConnection(filepath);
-                        /* Check if it is needed to create the data table first if DB file does not exist */
-                        File dbFile = new File(filepath);
-                        if (!dbFile.exists() || !areTablesInDB(db, filepath)) {
-                            createTable = true;
-                        }
-                        /* Previous file path */
-                        prevFilepath = filepath;
-                    }
+        return partitions;
+    }
 
-                    /* Insert the date */
-                    insertData(db, rowData, filepath, createTable);
-                }
+    /**
+     * Add a dates interval to the intervals of a DB file.
+     * 
+     * @param partitions
+     * @param filepath
+     * @param from
+     * @param to
+     */
+    private static void addPartition(Map<String, List<Date[]>> partitions, String filepath, Date from, Date to) {
+        List<Date[]> intervals = partitions.get(filepath);
+        if (intervals == null) {
+            intervals = new ArrayList<Date[]>();
+            partitions.put(filepath, intervals);
+        }
+        intervals.add(new Date[] {from, to });
+    }
 
-                /* Log message */
-                printMessage(System.out, insertedRows + " " + properties.getProperty("rowsinserted"));
+    /**
+     * Start counting the DB files loaded by a dump.
+     * 
+     * @param total - Number of DB files of the dump
+     */
+    private synchronized void startProgress(int total) {
+        totalPartitions = total;
+        loadedPartitions = 0;
+        if (progressBar != null) {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(total);
+            progressBar.setValue(0);
+        }
+    }
 
-                /* Next date (Date is in ascending order) */
-                prevNow = now;
-                now = sdf.parse(tableDataset.get(tableDataset.size() - 1).get("date"));
-            } while (to.after(now) && !cancel);
+    /**
+     * Count one more DB file loaded and show the progress of the dump.
+     */
+    private synchronized void partitionLoaded() {
+        loadedPartitions++;
+        printMessage(System.out, properties.getProperty("dbfilesloaded") + " " + loadedPartitions + "/"
+                + totalPartitions);
+        if (progressBar != null) {
+            progressBar.setValue(loadedPartitions);
+        }
+    }
 
-            /** Close any possible open db connection */
-            if (db != null) {
-                db.dispose();
+    /**
+     * Get the DB file of the time division of a date.
+     * 
+     * @param dbPath - DB files base path
+     * @param division
+     * @param dateCal - Event date
+     * @return DB file path
+     */
+    static String getDBFilePath(String dbPath, TimeDivision division, Calendar dateCal) {
+        /* Datebase file */
+        String filepath = dbPath + "__";
+        switch (division) {
+            case MONTH: {
+                filepath += dateCal.get(Calendar.MONTH);
+                break;
+            }
+            case WEEK: {
+                filepath += dateCal.get(Calendar.WEEK_OF_YEAR);
+                break;
             }
-
-            printMessage(System.out, insertedRows + " " + properties.getProperty("rowsinserted"));
-            printMessage(System.out, properties.getProperty("processfinished"));
-        } catch (Exception ex) {
-            ex.printStackTrace();
         }
+        filepath += "_" + dateCal.get(Calendar.YEAR);
+
+        return filepath;
     }
 
     /**
-     * Insert or update a single log event data into the SQLite DB.
+     * Follow the log files and insert their new events into the SQLite DB as they are written, until the process is
+     * cancelled. The logs directory is watched for changes; after a change the new lines of every log file are read
+     * after their saved ranges and committed in small transactions. A file rolled by DailyRollingFileAppender keeps
+     * its ranges and the new active file is read from the beginning.
      * 
-     * @param db
-     * @param tableDataset
-     * @param filepath
-     * @throws SQLiteException
+     * @param from - Date of the first events, only for the first reading
+     * @param division
+     * @param logsPath
+     * @param dbPath
      */
-    private void insertData(SQLiteConnection db, Map<String, String> dataRow, String filepath, boolean createTable) {
+    public void tailFilesToDB(Date from, TimeDivision division, String logsPath, String dbPath) {
         try {
-            /* Create log events table if needed */
-            if (createTable) {
-                createTables(db, filepath);
-            }
+            /** Load properties and events lists */
+            loadSettings();
+            int tailBatchSize = Integer.parseInt(properties.getProperty("tailbatchsize"));
+            long tailPollMillis = Long.parseLong(properties.getProperty("tailpollmillis"));
 
-            /* Insert data table row for log events */
-            Map<Integer, String> params = new HashMap<Integer, String>();
-            /* Date */
-            String datetime = dataRow.get("date");
-            params.put(1, datetime.split(" ")[0]);
-            /* Timestamp */
-            params.put(2, datetime);
-            /* Log level */
-            params.put(3, dataRow.get("level"));
-            /* Log event */
-            String logLine = dataRow.get("text");
-            Map<String, String> appEvent = getAppEvent(logLine);
-            params.put(4, appEvent.get("name"));
-            /* Log line */
-            params.put(5, logLine);
-            /* Source */
-            params.put(6, "");
-            /* Chart */
-            if (isAppEvent4Chart(logLine)) {
-                params.put(7, "1");
-            } else {
-                params.put(6, "0");
+            /** Init files paths */
+            if (logsPath == null) {
+                logsPath = properties.getProperty("log4jdir");
+            }
+            if (dbPath == null) {
+                dbPath = properties.getProperty("sqlitebasepath") + System.getProperty("file.separator")
+                        + properties.getProperty("sqlitebasename");
             }
 
-            /* Insert */
-            SQLiteStatement st = executeStatement(db, INSERT_LOG_EVENTS, params);
-            st.step();
-            st.dispose();
+            /** Get log4j date pattern and init table service */
+            String conversionPattern = getConversionPattern();
+            String datetimePattern = StatisticsUtils.getDatePattern(conversionPattern);
+            TableService ts = createTableService(conversionPattern);
+
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+            try {
+                Paths.get(logsPath).register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                printMessage(System.out, properties.getProperty("tailingfiles") + " " + logsPath);
+
+                /** Ranges read of the log files, kept between readings */
+                Map<List<String>, List<SourceRange>> checkpoints = IngestPipeline.loadCheckpoints(dbPath);
+                Date init = from;
+                while (!cancel) {
+                    /* Read the new lines of the log files, up to the end of today */
+                    Calendar end = getDayStart(new Date());
+                    end.add(Calendar.DATE, 1);
+                    ts.setDatesInterval(init, end.getTime());
+                    IngestPipeline pipeline = new IngestPipeline(this, ts, datetimePattern, dbPath, division,
+                            tailBatchSize, ingestThreads, ConnectionProfile.LIVE, checkpoints);
+                    long rows;
+                    try {
+                        ts.readSources(datetimePattern, logsPath, pipeline);
+                        rows = pipeline.finish();
+                    } finally {
+                        pipeline.close();
+                    }
+                    if (rows > 0) {
+                        insertedRows += rows;
+                        printMessage(System.out, rows + " " + properties.getProperty("rowsinserted"));
+                    }
 
-            /* Insert log text into text search table */
-            params = new HashMap<Integer, String>();
-            params.put(1, dataRow.get("text"));
-            st = executeStatement(db, INSERT_TEXT, params);
-            st.step();
-            st.dispose();
+                    /* The next readings start yesterday, as a file rolled at midnight may still have new lines */
+                    Calendar yesterday = getDayStart(new Date());
+                    yesterday.add(Calendar.DATE, -1);
+                    init = yesterday.getTime();
+
+                    /* Wait for a change in the directory. Some file systems do not notify every change */
+                    WatchKey key = null;
+                    long waited = 0;
+                    while (key == null && !cancel && waited < TAIL_RESCAN_MILLIS) {
+                        key = watcher.poll(tailPollMillis, TimeUnit.MILLISECONDS);
+                        waited += tailPollMillis;
+                    }
+                    if (key != null) {
+                        key.pollEvents();
+                        if (!key.reset()) {
+                            printMessage(System.err, logsPath + " " + properties.getProperty("tailstopped"));
+                            break;
+                        }
+                        /* Take the lines written meanwhile in the same reading */
+                        Thread.sleep(tailPollMillis);
+                    }
+                }
+            } finally {
+                watcher.close();
+            }
 
-            /* Increment counter */
-            insertedRows++;
+            printMessage(System.out, insertedRows + " " + properties.getProperty("rowsinserted"));
+            printMessage(System.out, properties.getProperty("processfinished"));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
     }
 
+    /**
+     * Load the properties, the ingestion settings and the application events lists.
+     * 
+     * @throws Exception
+     */
+    private void loadSettings() throws Exception {
+        /** Load properties */
+        properties.load("/labels.properties");
+        /** Load chart properties */
+        chartProps.load("/charts.properties");
+        printMessage(System.out, properties.getProperty("propsloaded"));
+        if (properties.getProperty("batchsize") != null) {
+            batchSize = Integer.parseInt(properties.getProperty("batchsize"));
+        }
+        if (properties.getProperty("ingestthreads") != null) {
+            int threads = Integer.parseInt(properties.getProperty("ingestthreads"));
+            ingestThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        }
+        if (properties.getProperty("ingestpartitions") != null) {
+            int partitions = Integer.parseInt(properties.getProperty("ingestpartitions"));
+            ingestPartitions = partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+        }
+        if (properties.getProperty("deferredtextindex") != null) {
+            deferTextIndex = Boolean.parseBoolean(properties.getProperty("deferredtextindex").trim());
+        }
+
+        /** Init events list */
+        initAppEvents(chartProps.getProperty("appeventstable"));
+        initAppEvents4Charts(chartProps.getProperty("appevents"));
+    }
+
+    /**
+     * Get the log4j conversion pattern of the log files.
+     * 
+     * @return
+     * @throws Exception
+     */
+    private String getConversionPattern() throws Exception {
+        return StatisticsUtils.getConversionPattern(properties.getProperty("log4jfilepath"),
+                properties.getProperty("log4jlogger"), properties.getProperty("log4jappender"));
+    }
+
+    /**
+     * Create the table service reading the log lines.
+     * 
+     * @param conversionPattern
+     * @return Table service, with no dates interval set
+     */
+    private TableService createTableService(String conversionPattern) {
+        /** Init table service */
+        TableService ts = new TableService(Integer.parseInt(properties.getProperty("defaultintervaltime")),
+                MAX_NUMBER_DATES);
+        /** Init log levels */
+        ts.initLogLevels();
+        /** Init app. events list */
+        ts.initAppEvents(chartProps.getProperty("appeventstable"));
+        /** Read log lines fields by position */
+        ts.setConversionPattern(conversionPattern);
+
+        return ts;
+    }
+
+    /**
+     * Get the start of the day of a date.
+     * 
+     * @param date
+     * @return
+     */
+    private static Calendar getDayStart(Date date) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal;
+    }
+
+    /**
+     * Get the application event of a log line for the table.
+     * 
+     * @param logLine
+     * @return App. event name, or null
+     */
+    String getAppEventName(String logLine) {
+        int appEvent = appEventMatcher.match(logLine);
+        return appEvent != AppEventMatcher.NONE ? appEventMatcher.getName(appEvent) : null;
+    }
+
+    /**
+     * Is the log line an application event for the charts?
+     * 
+     * @param logLine
+     * @return
+     */
+    boolean isChartEvent(String logLine) {
+        return appEventMatcher4Charts.contains(logLine);
+    }
+
     /**
      * Create new tables when needed.
      * 
@@ -486,10 +740,7 @@ public class Sqlite4JavaTool {
      * @param filepath
      * @throws SQLiteException
      */
-    private void createTables(SQLiteConnection db, String filepath) throws SQLiteException {
-        /* Init counter */
-        printMessage(System.out, insertedRows + " " + properties.getProperty("rowsinserted"));
-        insertedRows = 0;
+    void createTables(SQLiteConnection db, String filepath) throws SQLiteException {
         printMessage(System.out, "Inserting data in " + filepath);
 
         /* Create data table */
@@ -501,6 +752,150 @@ public class Sqlite4JavaTool {
         st = db.prepare(CREATE_VIRTUAL_TABLE);
         st.step();
         st.dispose();
+        db.exec(AUTOMERGE_VIRTUAL_TABLE);
+
+        /* Create rollup table and indexes */
+        db.exec(CREATE_ROLLUP_TABLE);
+        for (String index : CREATE_INDEXES) {
+            db.exec(index);
+        }
+    }
+
+    /**
+     * Add the rollup table and the indexes to a DB created before them. The rollup table is filled with the events
+     * already in the DB. A text search table keeping its own copy of the log lines is replaced by an index of the
+     * events table, and the DB file is compacted.
+     * 
+     * @param db
+     * @param filepath
+     * @throws SQLiteException
+     */
+    void upgradeTables(SQLiteConnection db, String filepath) throws SQLiteException {
+        if (!hasRollupTable(db)) {
+            printMessage(System.out, "Counting the events of " + filepath);
+            db.exec("BEGIN");
+            try {
+                db.exec(CREATE_ROLLUP_TABLE);
+                db.exec(FILL_ROLLUP_TABLE);
+                db.exec("COMMIT");
+            } catch (SQLiteException ex) {
+                db.exec("ROLLBACK");
+                throw ex;
+            }
+        }
+
+        for (String index : CREATE_INDEXES) {
+            db.exec(index);
+        }
+
+        if (!hasExternalContentText(db)) {
+            printMessage(System.out, "Indexing the log lines of " + filepath);
+            db.exec("BEGIN");
+            try {
+                db.exec(DROP_VIRTUAL_TABLE);
+                db.exec(CREATE_VIRTUAL_TABLE);
+                db.exec(REBUILD_VIRTUAL_TABLE);
+                db.exec(AUTOMERGE_VIRTUAL_TABLE);
+                db.exec("COMMIT");
+            } catch (SQLiteException ex) {
+                db.exec("ROLLBACK");
+                throw ex;
+            }
+            /* Release the pages of the dropped copy of the log lines */
+            db.exec("VACUUM");
+        }
+    }
+
+    /**
+     * Merge the segments of the text search index written by a dump, so the keyword searches read fewer of them.
+     * 
+     * @param db
+     * @throws SQLiteException
+     */
+    void mergeTextIndex(SQLiteConnection db) throws SQLiteException {
+        db.exec(MERGE_VIRTUAL_TABLE);
+    }
+
+    /**
+     * Build the text search index of a DB file loaded without it, from the log lines of the events table. The index
+     * is marked as built in the same transaction, and then its segments are merged into one and the DB file is
+     * compacted.
+     * 
+     * @param db
+     * @param filepath
+     * @throws SQLiteException
+     */
+    void buildTextIndex(SQLiteConnection db, String filepath) throws SQLiteException {
+        printMessage(System.out, "Indexing the log lines of " + filepath);
+        db.exec("BEGIN");
+        try {
+            db.exec(REBUILD_VIRTUAL_TABLE);
+            db.exec(DELETE_TEXT_INDEX_PENDING);
+            db.exec("COMMIT");
+        } catch (SQLiteException ex) {
+            db.exec("ROLLBACK");
+            throw ex;
+        }
+        db.exec(OPTIMIZE_VIRTUAL_TABLE);
+        db.exec(AUTOMERGE_VIRTUAL_TABLE);
+        /* Release the pages of the merged segments */
+        db.exec("VACUUM");
+    }
+
+    /**
+     * Check if the text search index of a DB file has every log line. A DB file being loaded with the index deferred
+     * is marked until its index is built.
+     * 
+     * @param db
+     * @return
+     * @throws SQLiteException
+     */
+    public static boolean isTextIndexReady(SQLiteConnection db) throws SQLiteException {
+        SQLiteStatement st;
+        try {
+            st = db.prepare(SELECT_TEXT_INDEX_PENDING);
+        } catch (SQLiteException ex) {
+            /* DB never loaded with the index deferred */
+            return true;
+        }
+
+        try {
+            return !st.step();
+        } finally {
+            st.dispose();
+        }
+    }
+
+    /**
+     * Check if the text search table indexes the events table instead of keeping its own copy of the log lines.
+     * 
+     * @param db
+     * @return
+     * @throws SQLiteException
+     */
+    private static boolean hasExternalContentText(SQLiteConnection db) throws SQLiteException {
+        SQLiteStatement st = db.prepare(SELECT_VIRTUAL_TABLE);
+        try {
+            return st.step() && st.columnString(0).indexOf("content=") != -1;
+        } finally {
+            st.dispose();
+        }
+    }
+
+    /**
+     * Check if the DB has the rollup table. DB files created before it only have the events table.
+     * 
+     * @param db
+     * @return
+     * @throws SQLiteException
+     */
+    public static boolean hasRollupTable(SQLiteConnection db) throws SQLiteException {
+        SQLiteStatement st = db.prepare(SELECT_ROLLUP_TABLE);
+        try {
+            return st.step();
+        } finally {
+            st.dispose();
+        }
     }
 
     /**
@@ -510,7 +905,7 @@ public class Sqlite4JavaTool {
      * @param filepath
      * @return
      */
-    private boolean areTablesInDB(SQLiteConnection db, String filepath) {
+    boolean areTablesInDB(SQLiteConnection db, String filepath) {
         boolean ret = true;
         try {
             /* Select log events */
@@ -539,6 +934,7 @@ public class Sqlite4JavaTool {
             String value = parts[1];
             this.appEventList.put(name, value);
         }
+        this.appEventMatcher = AppEventMatcher.compile(this.appEventList);
     }
 
     /**
@@ -556,59 +952,47 @@ public class Sqlite4JavaTool {
             String value = parts[1];
             this.appEventList4Charts.put(name, value);
         }
+        this.appEventMatcher4Charts = AppEventMatcher.compile(this.appEventList4Charts);
     }
 
     /**
-     * Get the application event code within the passed log line.
-     * 
-     * @param logLine
-     * @return
-     */
-    private Map<String, String> getAppEvent(String logLine) {
-        Map<String, String> appEvent = new HashMap<String, String>();
-        String logLineTmp = logLine.toLowerCase();
-        Set<String> names = appEventList.keySet();
-        for (String name : names) {
-            String value = appEventList.get(name);
-            if (logLineTmp.indexOf(value.toLowerCase()) != -1) {
-                appEvent.put("name", name);
-                appEvent.put("value", value);
-                return appEvent;
-            }
-        }
-
-        return null;
-    }
-
-    /**
-     * Check if application event is available for charting or not.
+     * Create DB connection.
      * 
-     * @param logLine
-     * @return
+     * @param filepath
+     * @return DB connection
+     * @throws SQLiteException
      */
-    private boolean isAppEvent4Chart(String logLine) {
-        String logLineTmp = logLine.toLowerCase();
-        Set<String> names = appEventList4Charts.keySet();
-        for (String name : names) {
-            String value = appEventList4Charts.get(name);
-            if (logLineTmp.indexOf(value.toLowerCase()) != -1) {
-                return true;
-            }
-        }
-
-        return false;
+    public static SQLiteConnection openDBConnection(String filepath) throws SQLiteException {
+        SQLiteConnection db = new SQLiteConnection(new File(filepath));
+        db.open(true);
+        return db;
     }
 
     /**
-     * Create DB connection.
+     * Create DB connection tuned for the given use. A read-only connection fails if the DB file does not exist.
      * 
      * @param filepath
+     * @param profile
      * @return DB connection
      * @throws SQLiteException
      */
-    public static SQLiteConnection openDBConnection(String filepath) throws SQLiteException {
+    public static SQLiteConnection openDBConnection(String filepath, ConnectionProfile profile)
+            throws SQLiteException {
         SQLiteConnection db = new SQLiteConnection(new File(filepath));
-        db.open(true);
+        try {
+            if (profile.isReadOnly()) {
+                db.openReadonly();
+            } else {
+                db.open(true);
+            }
+            for (String pragma : profile.getPragmas()) {
+                db.exec("PRAGMA " + pragma);
+            }
+        } catch (SQLiteException ex) {
+            db.dispose();
+            throw ex;
+        }
+
         return db;
     }
 
@@ -640,7 +1024,7 @@ public class Sqlite4JavaTool {
      * @param output
      * @param msg
      */
-    private void printMessage(PrintStream output, String msg) {
+    synchronized void printMessage(PrintStream output, String msg) {
         if (this.output == null) {
             output.println(msg);
         } else {
@@ -675,6 +1059,24 @@ public class Sqlite4JavaTool {
         this.output = textArea;
     }
 
+    /**
+     * Is the text search index built after the dump instead of row by row?
+     * 
+     * @return
+     */
+    boolean isTextIndexDeferred() {
+        return deferTextIndex;
+    }
+
+    /**
+     * Set progress bar, showing the DB files loaded by a dump.
+     * 
+     * @param progressBarArg
+     */
+    public void setProgressBar(JProgressBar progressBarArg) {
+        this.progressBar = progressBarArg;
+    }
+
     /**
      * Set cancel flag.
      * 
@@ -683,4 +1085,13 @@ public class Sqlite4JavaTool {
     public void setCancel(boolean cancel) {
         this.cancel = cancel;
     }
+
+    /**
+     * Get cancel flag.
+     * 
+     * @return
+     */
+    public boolean isCancel() {
+        return cancel;
+    }
 }